@@ -64,7 +64,9 @@ public class AltTextures extends SubRecordTyped {
             int strLength = Ln.arrayToInt(in.getInts(0, 4));
             AltTexture newText = new AltTexture(new LShrinkArray(in.extract(12 + strLength)), srcMod);
             altTextures.add(newText);
-            logMod(srcMod, "", "New Texture Alt -- Name: " + newText.name + ", texture: " + newText.texture + ", index: " + newText.index);
+            if (loggingMod()) {
+                logMod(srcMod, "", "New Texture Alt -- Name: " + newText.name + ", texture: " + newText.texture + ", index: " + newText.index);
+            }
         }
     }
 
@@ -0,0 +1,152 @@
+package skyproc;
+
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands log messages to a single writer thread, so importing and exporting
+ * threads don't wait on the log files. Messages are formatted by the writer,
+ * only once they have made it past SPGlobal's level checks.<br>
+ * The queue is bounded. When it is full, informational messages are dropped
+ * and counted rather than holding up the caller, and the count is logged once
+ * the writer catches up. Errors are never dropped. Whatever is still queued is
+ * written out on shutdown.
+ *
+ * @author Justin Swanson
+ */
+class AsyncLog {
+
+    static final int capacity = 1 << 13;
+    static final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(capacity);
+    static final AtomicLong dropped = new AtomicLong();
+    static final Thread writer;
+
+    static {
+        writer = new Thread(AsyncLog::drain, "SkyProc Log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(AsyncLog::flush, "SkyProc Log Flush"));
+    }
+
+    static class Entry {
+
+        final Logger logger;
+        final Level level;
+        final String pattern;
+        final Object[] args;
+
+        Entry(Logger logger, Level level, String pattern, Object[] args) {
+            this.logger = logger;
+            this.level = level;
+            this.pattern = pattern;
+            this.args = args;
+        }
+
+        void write() {
+            if (level == Level.ERROR) {
+                logger.error(pattern, args);
+            } else {
+                logger.info(pattern, args);
+            }
+        }
+    }
+
+    /**
+     * Queues a message, or drops it if the queue is full and it isn't an
+     * error.
+     *
+     * @param logger  Logger to write to.
+     * @param level   ERROR or INFO.
+     * @param pattern Message with {} placeholders.
+     * @param args    Values for the placeholders.
+     */
+    static void write(Logger logger, Level level, String pattern, Object... args) {
+        Entry e = new Entry(logger, level, pattern, freeze(args));
+        if (Thread.currentThread() == writer) {
+            e.write();
+            return;
+        }
+        if (level != Level.ERROR) {
+            if (!queue.offer(e)) {
+                dropped.incrementAndGet();
+            }
+            return;
+        }
+        try {
+            queue.put(e);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            e.write();
+        }
+    }
+
+    /**
+     * Immutable arguments are passed through as they are, and formatted by
+     * the writer. Anything that may change before the writer gets to it is
+     * turned into a String now.
+     *
+     * @param args Values for the placeholders, changed in place.
+     * @return args
+     */
+    static Object[] freeze(Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (!isImmutable(args[i])) {
+                args[i] = String.valueOf(args[i]);
+            }
+        }
+        return args;
+    }
+
+    static boolean isImmutable(Object o) {
+        return o == null || o instanceof String || o instanceof Enum || o instanceof Integer || o instanceof Long
+                || o instanceof Short || o instanceof Byte || o instanceof Double || o instanceof Float
+                || o instanceof Boolean || o instanceof Character || o instanceof BigInteger || o instanceof BigDecimal
+                // Log calls hand over their varargs arrays of Strings, which nothing else holds
+                || o instanceof String[];
+    }
+
+    /**
+     * Logs how many messages were dropped since the last time, if any.
+     */
+    static void reportDropped(Logger logger) {
+        long count = dropped.getAndSet(0);
+        if (count > 0) {
+            logger.info("[Log] Dropped {} messages while the log was behind.", count);
+        }
+    }
+
+    static void drain() {
+        while (true) {
+            try {
+                Entry e = queue.take();
+                reportDropped(e.logger);
+                e.write();
+            } catch (InterruptedException ex) {
+                return;
+            } catch (Throwable t) {
+                // A broken appender shouldn't take the writer down with it
+            }
+        }
+    }
+
+    /**
+     * Writes out everything still queued, on the calling thread.
+     */
+    static void flush() {
+        ArrayList<Entry> pending = new ArrayList<>(queue.size());
+        queue.drainTo(pending);
+        for (Entry e : pending) {
+            e.write();
+        }
+        if (!pending.isEmpty()) {
+            reportDropped(pending.get(0).logger);
+        }
+    }
+}
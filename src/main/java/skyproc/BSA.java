@@ -7,11 +7,13 @@ import lev.LShrinkArray;
 import lev.Ln;
 import skyproc.exceptions.BadParameter;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 /**
@@ -23,10 +25,9 @@ import java.util.*;
 public class BSA {
     static final Map<String, BSA> bsaLookup = new TreeMap<>();
     static ArrayList<BSA> resourceLoadOrder;
-    static final Map<ModListing, BSA> pluginLoadOrder = new TreeMap<>();
-    static boolean pluginsLoaded = false;
     static boolean overlapDeleted = false;
     static final String header = "BSA";
+    static final int indexVersion = 1;
     String filePath;
     int offset;
     LFlags archiveFlags;
@@ -38,7 +39,15 @@ public class BSA {
     boolean loaded = false;
     boolean bad = false;
     Map<String, BSAFolder> folders;
+    // File table, grouped by folder and sorted by name within each folder
+    String[] fileNames;
+    int[] fileSizes;
+    int[] fileOffsets;
+    BitSet flipped;
     final LInChannel in = new LInChannel();
+    // Positional reads on this channel don't move a shared position, so file
+    // data can be extracted from several threads at once.
+    final FileChannel data;
 
     BSA(File file, boolean load) throws BadParameter {
         this(file.getPath(), load);
@@ -47,6 +56,24 @@ public class BSA {
     BSA(String filePath, boolean load) throws BadParameter {
         this.filePath = filePath;
         in.openFile(filePath);
+        try {
+            data = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        } catch (IOException ex) {
+            in.close();
+            throw new BadParameter("Could not open BSA file: " + filePath);
+        }
+        try {
+            readHeader();
+        } catch (BadParameter | RuntimeException ex) {
+            close();
+            throw ex;
+        }
+        if (load) {
+            loadFolders();
+        }
+    }
+
+    void readHeader() throws BadParameter {
         //if (!in.extractString(0, 3).equals("BSA") || in.extractInt(1, 4) != 104) {
         if (!in.extractString(0, 3).equals("BSA") || in.extractInt(1, 4) != 105) {
             throw new BadParameter("Was not a BSA file of version 104: " + filePath);
@@ -59,7 +86,7 @@ public class BSA {
         folderNameLength = in.extractInt(0, 4);
         fileNameLength = in.extractInt(0, 4);
         fileFlags = new LFlags(in.extract(0, 4));
-        if (SPGlobal.debugBSAimport && SPGlobal.logging()) {
+        if (SPGlobal.debugBSAimport && SPGlobal.logging(LogTypes.BSA)) {
             SPGlobal.logSpecial(LogTypes.BSA, header, "|==================>");
             SPGlobal.logSpecial(LogTypes.BSA, header, "| Imported " + filePath);
             SPGlobal.logSpecial(LogTypes.BSA, header, "| Offset " + offset + ", archiveFlags: " + archiveFlags);
@@ -69,9 +96,6 @@ public class BSA {
             SPGlobal.logSpecial(LogTypes.BSA, header, "| fileFlags: " + fileFlags.toString());
             SPGlobal.logSpecial(LogTypes.BSA, header, "|==================>");
         }
-        if (load) {
-            loadFolders();
-        }
     }
 
     /**
@@ -129,8 +153,9 @@ public class BSA {
 //        return null;
 //    }
 
-    static void loadPluginLoadOrder() {
-        if (pluginsLoaded) {
+    static synchronized void loadPluginLoadOrder() {
+        SPSession session = SPSession.current();
+        if (session.pluginBSAsLoaded) {
             return;
         }
         if (SPGlobal.logging()) {
@@ -139,10 +164,10 @@ public class BSA {
         try {
             ArrayList<ModListing> activeMods = SPImporter.getActiveModList();
             for (ModListing m : activeMods) {
-                if (!pluginLoadOrder.containsKey(m)) {
+                if (!session.pluginBSAs.containsKey(m)) {
                     BSA bsa = getBSA(m);
                     if (bsa != null) {
-                        pluginLoadOrder.put(m, bsa);
+                        session.pluginBSAs.put(m, bsa);
                     }
                 }
             }
@@ -150,10 +175,10 @@ public class BSA {
             SPGlobal.logException(ex);
         }
 
-        pluginsLoaded = true;
+        session.pluginBSAsLoaded = true;
     }
 
-    static void loadResourceLoadOrder() {
+    static synchronized void loadResourceLoadOrder() {
         if (resourceLoadOrder != null) {
             return;
         }
@@ -332,6 +357,23 @@ public class BSA {
         }
     }
 
+    /**
+     * Closes every archive opened so far and forgets them, so each is opened
+     * again the next time it's needed. Only call this once no session is
+     * reading from BSAs; the current session's plugin BSAs are forgotten too.
+     */
+    static synchronized public void closeAll() {
+        for (BSA bsa : bsaLookup.values()) {
+            bsa.close();
+        }
+        bsaLookup.clear();
+        resourceLoadOrder = null;
+        overlapDeleted = false;
+        SPSession session = SPSession.current();
+        session.pluginBSAs.clear();
+        session.pluginBSAsLoaded = false;
+    }
+
     static ArrayList<String> processINIline(String in) {
         if (SPGlobal.logging()) {
             SPGlobal.logSpecial(LogTypes.BSA, header, "Processing line: " + in);
@@ -377,7 +419,7 @@ public class BSA {
         if (!overlapDeleted) {
             return;
         }
-        for (BSA b : pluginLoadOrder.values()) {
+        for (BSA b : SPSession.current().pluginBSAs.values()) {
             resourceLoadOrder.remove(b);
         }
         overlapDeleted = true;
@@ -393,9 +435,10 @@ public class BSA {
         loadPluginLoadOrder();
         deleteOverlap();
 
-        ArrayList<BSA> order = new ArrayList<>(resourceLoadOrder.size() + pluginLoadOrder.size());
+        Map<ModListing, BSA> plugins = SPSession.current().pluginBSAs;
+        ArrayList<BSA> order = new ArrayList<>(resourceLoadOrder.size() + plugins.size());
         order.addAll(resourceLoadOrder);
-        order.addAll(pluginLoadOrder.values());
+        order.addAll(plugins.values());
         return order;
     }
 
@@ -408,8 +451,9 @@ public class BSA {
 
     static ArrayList<BSA> getPluginBSAs() {
         loadPluginLoadOrder();
-        ArrayList<BSA> resources = new ArrayList<>(pluginLoadOrder.size());
-        resources.addAll(pluginLoadOrder.values());
+        Map<ModListing, BSA> plugins = SPSession.current().pluginBSAs;
+        ArrayList<BSA> resources = new ArrayList<>(plugins.size());
+        resources.addAll(plugins.values());
         return resources;
     }
 
@@ -419,9 +463,10 @@ public class BSA {
      * @param m
      * @return
      */
-    static public BSA getBSA(ModListing m) {
-        if (pluginLoadOrder.containsKey(m)) {
-            return pluginLoadOrder.get(m);
+    static synchronized public BSA getBSA(ModListing m) {
+        Map<ModListing, BSA> plugins = SPSession.current().pluginBSAs;
+        if (plugins.containsKey(m)) {
+            return plugins.get(m);
         }
 
         File bsaPath = new File(SPGlobal.pathToDataFixed + Ln.changeFileTypeTo(m.print(), "bsa"));
@@ -434,7 +479,7 @@ public class BSA {
                 } else {
                     bsa = bsaLookup.get(bsaPath.getPath().toUpperCase());
                 }
-                pluginLoadOrder.put(m, bsa);
+                plugins.put(m, bsa);
                 return bsa;
             } catch (BadParameter ex) {
                 logBSAError(m.printNoSuffix() + ".bsa", ex);
@@ -486,7 +531,7 @@ public class BSA {
         SPGlobal.log(sw.toString());
     }
 
-    final void loadFolders() {
+    final synchronized void loadFolders() {
         if (loaded) {
             return;
         }
@@ -496,24 +541,36 @@ public class BSA {
             SPGlobal.logSpecial(LogTypes.BSA, header, "|============  Loading " + this + " ============");
             SPGlobal.logSpecial(LogTypes.BSA, header, "|============================================");
         }
+        if (SPGlobal.cacheBSAIndices && loadIndex()) {
+            if (SPGlobal.logging()) {
+                SPGlobal.logSpecial(LogTypes.BSA, header, "Loaded BSA from index cache: " + getFilePath());
+            }
+            return;
+        }
         try {
             StringBuilder fileName;
-            int fileCounter = 0;
             in.pos(offset);
             ArrayList<BSAFolder> temp_folders = new ArrayList<>();
             int fileRecordsSize = folderCount + folderNameLength + fileCount * 16;
+            int numFiles = 0;
             for (int i = 0; i < folderCount; i++) {
                 BSAFolder folder = new BSAFolder();
                 in.skip(8); // Skip Hash
-                folder.setFileCount(in.extractInt(4));
+                folder.fileCount = in.extractInt(4);
+                numFiles += folder.fileCount;
                 in.skip(4);
                 folder.dataPos = in.extractLong(0, 8);
                 temp_folders.add(folder);
             }
             LShrinkArray fileRecords = new LShrinkArray(in.extract(0, fileRecordsSize));
             LShrinkArray fileNames = new LShrinkArray(in.extract(0, fileNameLength));
+            this.fileNames = new String[numFiles];
+            fileSizes = new int[numFiles];
+            fileOffsets = new int[numFiles];
+            flipped = new BitSet(numFiles);
 
             int fileNameListPos = 0;
+            int index = 0;
             int startOfFileRecords = 36 + 24 * folderCount;
             for (int i = 0; i < folderCount; i++) {
                 BSAFolder folder = temp_folders.get(i);
@@ -521,20 +578,19 @@ public class BSA {
                 fileRecords.pos(folder.dataPos);
                 int folderNameLength_ = fileRecords.read() - 1;
                 fileRecords.pos(folder.dataPos + 1);
-                folder.name = fileRecords.extractString(0, folderNameLength_);
-                folder.name = folder.name.toUpperCase();
-                if (SPGlobal.debugBSAimport && SPGlobal.logging()) {
+                folder.name = fileRecords.extractString(0, folderNameLength_).toUpperCase().intern();
+                if (SPGlobal.debugBSAimport && SPGlobal.logging(LogTypes.BSA)) {
                     SPGlobal.logSpecial(LogTypes.BSA, header, "Loaded folder: " + folder.name);
                 }
+                folder.start = index;
                 long startOfFolderFileRecords = folder.dataPos + folderNameLength_ + 2;
-                for (int j = 0; j < folder.fileCount; j++) {
-                    BSAFileRef f = new BSAFileRef();
+                for (int j = 0; j < folder.fileCount; j++, index++) {
                     fileRecords.pos(startOfFolderFileRecords + j * 16L);
                     fileRecords.skip(8); // Skip Hash
-                    f.size = fileRecords.extractInt(3);
+                    fileSizes[index] = fileRecords.extractInt(3);
                     LFlags sizeFlag = new LFlags(fileRecords.extract(1));
-                    f.flippedCompression = sizeFlag.get(6);
-                    f.dataOffset = fileRecords.extractInt(4);
+                    flipped.set(index, sizeFlag.get(6));
+                    fileOffsets[index] = fileRecords.extractInt(4);
                     fileNames.pos(fileNameListPos);
                     fileName = new StringBuilder();
                     while (true) {
@@ -546,17 +602,17 @@ public class BSA {
                         fileName.append((char) r);
                     }
                     fileNameListPos++;
-                    folder.files.put(fileName.toString().toUpperCase(), f);
-                    if (SPGlobal.logging()) {
-                        SPGlobal.logSpecial(LogTypes.BSA, header, "  " + fileName + ", size: " + Ln.prettyPrintHex(f.size) + ", offset: " + Ln.prettyPrintHex(f.dataOffset) + ", flipped: " + f.flippedCompression);
-                        fileCounter++;
+                    this.fileNames[index] = fileName.toString().toUpperCase();
+                    if (SPGlobal.debugBSAimport && SPGlobal.logging(LogTypes.BSA)) {
+                        SPGlobal.logSpecial(LogTypes.BSA, header, "  " + fileName + ", size: " + Ln.prettyPrintHex(fileSizes[index]) + ", offset: " + Ln.prettyPrintHex(fileOffsets[index]) + ", flipped: " + flipped.get(index));
                     }
                 }
+                sortFolder(folder);
                 folders.put(folder.name, folder);
             }
             if (SPGlobal.logging()) {
                 if (SPGlobal.debugBSAimport) {
-                    SPGlobal.logSpecial(LogTypes.BSA, header, "Loaded " + fileCounter + " files.");
+                    SPGlobal.logSpecial(LogTypes.BSA, header, "Loaded " + numFiles + " files.");
                 }
                 SPGlobal.logSpecial(LogTypes.BSA, header, "Loaded BSA: " + getFilePath());
             }
@@ -564,6 +620,152 @@ public class BSA {
             SPGlobal.logException(e);
             SPGlobal.logError("BSA", "Skipped BSA " + this);
             bad = true;
+            // Leave no half read tables behind
+            folders = new HashMap<>(0);
+            fileNames = new String[0];
+            fileSizes = new int[0];
+            fileOffsets = new int[0];
+            flipped = new BitSet(0);
+            return;
+        }
+        if (SPGlobal.cacheBSAIndices && !SPGlobal.testing) {
+            saveIndex();
+        }
+    }
+
+    /**
+     * Sorts a folder's section of the file table by name, so files can be
+     * found with a binary search.
+     */
+    void sortFolder(BSAFolder folder) {
+        Integer[] order = new Integer[folder.fileCount];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = folder.start + i;
+        }
+        Arrays.sort(order, Comparator.comparing(i -> fileNames[i]));
+        String[] names = new String[order.length];
+        int[] sizes = new int[order.length];
+        int[] offsets = new int[order.length];
+        boolean[] flips = new boolean[order.length];
+        for (int i = 0; i < order.length; i++) {
+            names[i] = fileNames[order[i]];
+            sizes[i] = fileSizes[order[i]];
+            offsets[i] = fileOffsets[order[i]];
+            flips[i] = flipped.get(order[i]);
+        }
+        for (int i = 0; i < order.length; i++) {
+            fileNames[folder.start + i] = names[i];
+            fileSizes[folder.start + i] = sizes[i];
+            fileOffsets[folder.start + i] = offsets[i];
+            flipped.set(folder.start + i, flips[i]);
+        }
+    }
+
+    File getIndexFile() throws IOException {
+        File bsa = new File(filePath);
+        return new File(SPGlobal.getSkyProcDocuments(), "BSA Index" + File.separator
+                + Integer.toHexString(bsa.getPath().toUpperCase().hashCode()) + "_" + bsa.getName() + ".idx");
+    }
+
+    /**
+     * Loads the folder and file tables from the index cache, if there is one
+     * for this exact archive (same path, size and modified date).
+     *
+     * @return True if the cache was used.
+     */
+    boolean loadIndex() {
+        try {
+            File index = getIndexFile();
+            if (!index.isFile()) {
+                return false;
+            }
+            File bsa = new File(filePath);
+            DataInputStream cache = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(index.toPath())));
+            if (cache.readInt() != indexVersion
+                    || !cache.readUTF().equalsIgnoreCase(bsa.getPath())
+                    || cache.readLong() != bsa.length()
+                    || cache.readLong() != bsa.lastModified()) {
+                return false;
+            }
+            int numFolders = cache.readInt();
+            int numFiles = cache.readInt();
+            // Every folder and file takes at least this many bytes, so a damaged
+            // count can't ask for more than the cache holds
+            if (numFolders < 0 || numFiles < 0 || numFolders * 18L + numFiles * 11L > cache.available()) {
+                throw new IOException("Bad counts in index cache " + index);
+            }
+            Map<String, BSAFolder> cachedFolders = new HashMap<>(numFolders);
+            for (int i = 0; i < numFolders; i++) {
+                BSAFolder folder = new BSAFolder();
+                folder.name = cache.readUTF().intern();
+                folder.dataPos = cache.readLong();
+                folder.start = cache.readInt();
+                folder.fileCount = cache.readInt();
+                if (folder.start < 0 || folder.fileCount < 0 || folder.start + (long) folder.fileCount > numFiles) {
+                    throw new IOException("Bad folder " + folder.name + " in index cache " + index);
+                }
+                cachedFolders.put(folder.name, folder);
+            }
+            String[] names = new String[numFiles];
+            int[] sizes = new int[numFiles];
+            int[] offsets = new int[numFiles];
+            BitSet flips = new BitSet(numFiles);
+            for (int i = 0; i < numFiles; i++) {
+                names[i] = cache.readUTF();
+                sizes[i] = cache.readInt();
+                offsets[i] = cache.readInt();
+                flips.set(i, cache.readBoolean());
+            }
+            if (cache.available() != 0) {
+                throw new IOException("Trailing data in index cache " + index);
+            }
+            folders = cachedFolders;
+            fileNames = names;
+            fileSizes = sizes;
+            fileOffsets = offsets;
+            flipped = flips;
+            return true;
+        } catch (IOException ex) {
+            // Read from the archive instead, which saves a fresh cache
+            SPGlobal.logException(ex);
+            SPGlobal.logError(header, "Ignoring damaged index cache for " + this);
+            return false;
+        }
+    }
+
+    void saveIndex() {
+        try {
+            File index = getIndexFile();
+            index.getParentFile().mkdirs();
+            File tmp = new File(index.getPath() + "Tmp");
+            File bsa = new File(filePath);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(indexVersion);
+                out.writeUTF(bsa.getPath());
+                out.writeLong(bsa.length());
+                out.writeLong(bsa.lastModified());
+                out.writeInt(folders.size());
+                out.writeInt(fileNames.length);
+                for (BSAFolder folder : folders.values()) {
+                    out.writeUTF(folder.name);
+                    out.writeLong(folder.dataPos);
+                    out.writeInt(folder.start);
+                    out.writeInt(folder.fileCount);
+                }
+                for (int i = 0; i < fileNames.length; i++) {
+                    out.writeUTF(fileNames[i]);
+                    out.writeInt(fileSizes[i]);
+                    out.writeInt(fileOffsets[i]);
+                    out.writeBoolean(flipped.get(i));
+                }
+            }
+            if (index.isFile()) {
+                index.delete();
+            }
+            tmp.renameTo(index);
+        } catch (IOException ex) {
+            SPGlobal.logException(ex);
+            SPGlobal.logError(header, "Could not save index cache for " + this);
         }
     }
 
@@ -575,6 +777,18 @@ public class BSA {
         in.pos(folder.dataPos - fileNameLength);
     }
 
+    /**
+     * Closes the archive's files. Nothing can be read from the BSA afterwards.
+     */
+    public synchronized void close() {
+        in.close();
+        try {
+            data.close();
+        } catch (IOException ex) {
+            SPGlobal.logException(ex);
+        }
+    }
+
     /**
      * @return True if BSA has loaded it's folder listings.
      */
@@ -591,32 +805,96 @@ public class BSA {
     public LShrinkArray getFile(String filePath1) {
         BSAFileRef ref;
         if ((ref = getFileRef(filePath1)) != null) {
-            in.pos(ref.dataOffset);
-            int aSize = ref.size;
-            if (is(BSAFlag.NamesInFileData)) {
-                while (true) {
-                    int r = in.read();
-                    if (r == 0) {
-                        break;
-                    }
-                    aSize--;
-                }
-                aSize--;
+            try {
+                return extractFile(ref);
+            } catch (IOException ex) {
+                SPGlobal.logException(ex);
             }
-            if (isCompressed(ref)) {
-                int uncompressedSize = Ln.arrayToInt(in.extractInts(4));
-                aSize -= 4;
-                byte[] compressedByteData = in.extract(aSize);
+        }
+        return new LShrinkArray(new byte[0]);
+    }
 
-                Lz4Decompressor decompressor2 = new Lz4Decompressor();
-                byte[] uncompressedByteData = new byte[uncompressedSize];
+    /**
+     * Retrieves several files at once. The reads are done in the order the
+     * files are stored in the BSA, so the disk is read sequentially.
+     *
+     * @param filePaths filepaths to query for and retrieve.
+     * @return Map of filepath to ShrinkArray of the file's data, already
+     * decompressed if applicable. Files that did not exist are left out.
+     */
+    public Map<String, LShrinkArray> getFiles(Collection<String> filePaths) {
+        final Map<String, BSAFileRef> refs = new HashMap<>(filePaths.size());
+        for (String filePath1 : filePaths) {
+            BSAFileRef ref = getFileRef(filePath1);
+            if (ref != null) {
+                refs.put(filePath1, ref);
+            }
+        }
+        ArrayList<String> order = new ArrayList<>(refs.keySet());
+        order.sort(Comparator.comparingLong(p -> refs.get(p).dataOffset));
 
-                int decompressedLength2 = decompressor2.decompress(compressedByteData, 0, aSize, uncompressedByteData, 0, uncompressedSize);
-                return new LShrinkArray(ByteBuffer.wrap(uncompressedByteData));
+        Map<String, LShrinkArray> out = new HashMap<>(order.size());
+        for (String filePath1 : order) {
+            try {
+                out.put(filePath1, extractFile(refs.get(filePath1)));
+            } catch (IOException ex) {
+                SPGlobal.logException(ex);
             }
-            return new LShrinkArray(in.extract(0, aSize));
         }
-        return new LShrinkArray(new byte[0]);
+        return out;
+    }
+
+    LShrinkArray extractFile(BSAFileRef ref) throws IOException {
+        return new LShrinkArray(extractBuffer(ref));
+    }
+
+    /**
+     * @param filePath filepath to query for and retrieve.
+     * @return The file's data, already decompressed if applicable, or null if
+     * the file did not exist.
+     */
+    ByteBuffer getFileBuffer(String filePath) {
+        BSAFileRef ref;
+        if ((ref = getFileRef(filePath)) != null) {
+            try {
+                return extractBuffer(ref);
+            } catch (IOException ex) {
+                SPGlobal.logException(ex);
+            }
+        }
+        return null;
+    }
+
+    ByteBuffer extractBuffer(BSAFileRef ref) throws IOException {
+        byte[] raw = read(ref.dataOffset, ref.size);
+        int start = 0;
+        if (is(BSAFlag.NamesInFileData)) {
+            while (start < raw.length && raw[start] != 0) {
+                start++;
+            }
+            start++;
+        }
+        int aSize = raw.length - start;
+        if (isCompressed(ref)) {
+            int uncompressedSize = ByteBuffer.wrap(raw, start, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            byte[] uncompressedByteData = new byte[uncompressedSize];
+            new Lz4Decompressor().decompress(raw, start + 4, aSize - 4, uncompressedByteData, 0, uncompressedSize);
+            return ByteBuffer.wrap(uncompressedByteData);
+        }
+        if (start > 0) {
+            raw = Arrays.copyOfRange(raw, start, raw.length);
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    byte[] read(long position, int length) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(length);
+        while (out.hasRemaining()) {
+            if (data.read(out, position + out.position()) < 0) {
+                throw new EOFException("Unexpected end of " + filePath);
+            }
+        }
+        return out.array();
     }
 
     void trimName(LShrinkArray out) {
@@ -660,7 +938,7 @@ public class BSA {
         return getFile(f.getPath());
     }
 
-    String getFilename(String filePath) {
+    synchronized String getFilename(String filePath) {
         BSAFileRef ref;
         if ((ref = getFileRef(filePath)) != null) {
             in.pos(ref.nameOffset);
@@ -676,7 +954,14 @@ public class BSA {
         BSAFolder folder = folders.get(folderPath);
         if (folder != null) {
             String file = filePath.substring(index + 1);
-            return folder.files.get(file);
+            int i = Arrays.binarySearch(fileNames, folder.start, folder.start + folder.fileCount, file);
+            if (i >= 0) {
+                BSAFileRef ref = new BSAFileRef();
+                ref.size = fileSizes[i];
+                ref.dataOffset = Integer.toUnsignedLong(fileOffsets[i]);
+                ref.flippedCompression = flipped.get(i);
+                return ref;
+            }
         }
         return null;
     }
@@ -725,11 +1010,13 @@ public class BSA {
      * values.
      */
     public Map<String, ArrayList<String>> getFiles() {
+        loadFolders();
+        if (fileNames == null) {
+            return new HashMap<>(0);
+        }
         Map<String, ArrayList<String>> out = new HashMap<>(folders.size());
         for (BSAFolder folder : folders.values()) {
-            ArrayList<String> list = new ArrayList<>(folder.files.values().size());
-            out.put(folder.name, list);
-            list.addAll(folder.files.keySet());
+            out.put(folder.name, new ArrayList<>(Arrays.asList(fileNames).subList(folder.start, folder.start + folder.fileCount)));
         }
         return out;
     }
@@ -745,11 +1032,7 @@ public class BSA {
      * @return Number of files contained in the BSA
      */
     public int numFiles() {
-        int out = 0;
-        for (BSAFolder folder : folders.values()) {
-            out += folder.fileCount;
-        }
-        return out;
+        return fileNames == null ? 0 : fileNames.length;
     }
 
     /**
@@ -772,12 +1055,13 @@ public class BSA {
 
     boolean manualContains(FileType[] fileTypes) {
         loadFolders();
-        for (BSAFolder folder : folders.values()) {
-            for (String file : folder.files.keySet()) {
-                for (FileType type : fileTypes) {
-                    if (file.endsWith(type.toString())) {
-                        return true;
-                    }
+        if (fileNames == null) {
+            return false;
+        }
+        for (String file : fileNames) {
+            for (FileType type : fileTypes) {
+                if (file.endsWith(type.toString())) {
+                    return true;
                 }
             }
         }
@@ -902,12 +1186,8 @@ public class BSA {
 
         String name;
         long dataPos;
-        Map<String, BSAFileRef> files = new HashMap<>();
-        private int fileCount;
-
-        void setFileCount(int fileCount) {
-            this.fileCount = fileCount;
-            files = new HashMap<>(fileCount);
-        }
+        // Range of the folder's files in the BSA's file table
+        int start;
+        int fileCount;
     }
 }
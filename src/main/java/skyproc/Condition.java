@@ -271,7 +271,7 @@ public class Condition extends SubShell {
      * @param index
      * @return
      */
-    public static Enum getScript(Integer index) {
+    public static synchronized Enum getScript(Integer index) {
         if (scriptMap.isEmpty()) {
             for (P_Axis e : P_Axis.values()) {
                 scriptMap.put(e.index, e);
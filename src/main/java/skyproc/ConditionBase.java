@@ -45,9 +45,7 @@ class ConditionBase extends SubRecord {
 
         //Value
         if (get(Condition.CondFlag.UseGlobal)) {
-            // This FormID is flipped, so it's an odd export.
-            comparisonValueForm.adjustMasterIndex(out.getExportMod());
-            out.write(comparisonValueForm.getInternal(true));
+            comparisonValueForm.export(out);
         } else {
             out.write(comparisonValueFloat);
         }
@@ -72,10 +70,8 @@ class ConditionBase extends SubRecord {
 
         //Value
         if (get(Condition.CondFlag.UseGlobal)) {
-            // Use public set here, because for some reason, this FormID is flipped
             comparisonValueForm = new FormID();
-            comparisonValueForm.set(Ln.reverse(in.extract(4)));
-            comparisonValueForm.standardize(srcMod);
+            comparisonValueForm.parseData(in, srcMod);
         } else {
             comparisonValueFloat = in.extractFloat();
         }
@@ -84,9 +80,11 @@ class ConditionBase extends SubRecord {
         option = ConditionOption.getOption(in.extractInt(2));
         padding = in.extract(2);
 
-        logMod(srcMod, "", "New Condition.  Function: " + option.script.toString() + ", index: " + option.index);
-        logMod(srcMod, "", "  Operator: " + operator + ", flags: " + flags + " useGlobal: " + get(Condition.CondFlag.UseGlobal));
-        logMod(srcMod, "", "  Comparison Val: " + comparisonValueForm + "|" + comparisonValueFloat);
+        if (loggingMod()) {
+            logMod(srcMod, "", "New Condition.  Function: " + option.script.toString() + ", index: " + option.index);
+            logMod(srcMod, "", "  Operator: " + operator + ", flags: " + flags + " useGlobal: " + get(Condition.CondFlag.UseGlobal));
+            logMod(srcMod, "", "  Comparison Val: " + comparisonValueForm + "|" + comparisonValueFloat);
+        }
 
         option.parseData(in, srcMod);
 
@@ -6,10 +6,9 @@ import lev.LOutChannel;
 import lev.LShrinkArray;
 
 import javax.swing.*;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -18,28 +17,32 @@ import java.util.Map.Entry;
  */
 class Consistency {
 
-    static final ConsistencyVersion consistency = new ConsistencyV3();
     static final String header = "Consistency";
     static final boolean automaticExport = true;
-    static boolean imported = false;
     static final char[] badChars = {(char) 0x0D, (char) 0x0A};
     static final String debugFolder = "Consistency/";
-    static private boolean cleaned = false;
+
+    /**
+     * @return The consistency data of the current SPSession.
+     */
+    static ConsistencyVersion consistency() {
+        return SPSession.current().consistency;
+    }
 
     static FormID getOldForm(String edid) {
-        return consistency.getOldForm(edid);
+        return consistency().getOldForm(edid);
     }
 
     static boolean requestID(FormID id) {
-        return consistency.requestID(id);
+        return consistency().requestID(id);
     }
 
     static void cleanConsistency() {
-        cleaned = true;
+        SPSession.current().consistencyCleaned = true;
     }
 
     static boolean isCleaned() {
-        return cleaned;
+        return SPSession.current().consistencyCleaned;
     }
 
     static void syncIDwithEDID(String edid, MajorRecord m) {
@@ -62,23 +65,26 @@ class Consistency {
     }
 
     static public FormID getNextID(Mod srcMod) {
-        FormID possibleID = srcMod.getNextID();
-        while (!Consistency.requestID(possibleID)) {
-            if (possibleID.isNull()) {
-                if (!Consistency.cleaned) {
-                    srcMod.resetNextIDcounter();
-                    Consistency.cleanConsistency();
-                    return getNextID(srcMod);
-                } else {
-                    SPGlobal.logError(srcMod.toString(), "Ran out of available formids.");
-                    JOptionPane.showMessageDialog(null, "<html>The output patch ran out of available FormIDs.<br>"
-                            + "Please contact Leviathan1753.</html>");
-                    return null;
-                }
+        SPSession session = SPSession.current();
+        if (session.allocator == null || session.allocatorMod != srcMod) {
+            session.allocator = new FormIDAllocator(Mod.HEDR.firstAvailableID);
+            session.allocatorMod = srcMod;
+            session.consistency.markUsed(session.allocator, srcMod);
+        }
+        int id;
+        while ((id = session.allocator.next()) != -1) {
+            FormID possibleID = new FormID(id, srcMod.getInfo());
+            // The bitmap is seeded from the consistency records, but check anyway
+            if (Consistency.requestID(possibleID)) {
+                srcMod.claimID(id);
+                return possibleID;
             }
-            possibleID = srcMod.getNextID();
         }
-        return possibleID;
+        Consistency.cleanConsistency();
+        SPGlobal.logError(srcMod.toString(), "Ran out of available formids.");
+        JOptionPane.showMessageDialog(null, "<html>The output patch ran out of available FormIDs.<br>"
+                + "Please contact Leviathan1753.</html>");
+        return null;
     }
 
     static public String edidFilter(String edid) {
@@ -90,12 +96,15 @@ class Consistency {
     }
 
     static void getConsistencyFile() throws IOException {
-        consistency.getConsistencyFile();
+        consistency().getConsistencyFile();
     }
 
     static void clear() {
-        imported = false;
-        consistency.clear();
+        SPSession session = SPSession.current();
+        session.consistencyImported = false;
+        session.allocator = null;
+        session.allocatorMod = null;
+        session.consistency.clear();
     }
 
     static void importConsistency(boolean globalOnly) {
@@ -103,8 +112,8 @@ class Consistency {
             if (SPGlobal.testing) {
                 return;
             }
-            consistency.importConsistency(globalOnly);
-            imported = true;
+            consistency().importConsistency(globalOnly);
+            SPSession.current().consistencyImported = true;
         } catch (Exception ex) {
             SPGlobal.logException(ex);
             JOptionPane.showMessageDialog(null, "<html>There was an error importing the consistency information.<br><br>"
@@ -116,15 +125,19 @@ class Consistency {
     }
 
     static boolean insert(String EDID, FormID id) {
-        return consistency.insert(EDID, id);
+        return consistency().insert(EDID, id);
     }
 
     static void export() throws IOException {
-        consistency.export();
+        FormIDAllocator allocator = SPSession.current().allocator;
+        if (allocator != null && SPGlobal.logging()) {
+            SPGlobal.logSpecial(LogTypes.CONSISTENCY, header, allocator.toString());
+        }
+        consistency().export();
     }
 
     static boolean isImported() {
-        return imported;
+        return SPSession.current().consistencyImported;
     }
 
     enum LogTypes {
@@ -135,13 +148,29 @@ class Consistency {
 
     abstract static class ConsistencyVersion {
 
-        final Set<FormID> set = new HashSet<>();
+        // EDID each FormID was handed out to
+        final FormIDMap<String> set = new FormIDMap<>();
         final LMergeMap<FormID, String> conflicts = new LMergeMap<>(false);
 
         abstract FormID getOldForm(String edid);
 
         boolean requestID(FormID id) {
-            return !set.contains(id);
+            return !set.containsKey(id);
+        }
+
+        /**
+         * Marks every object ID on record for the given mod as taken.
+         */
+        void markUsed(FormIDAllocator allocator, Mod mod) {
+            Integer masterKey = FormID.masterKeys.get(mod.getInfo());
+            if (masterKey == null) {
+                return;
+            }
+            set.forEachKey(key -> {
+                if ((key >>> 24) == masterKey) {
+                    allocator.markUsed((int) key);
+                }
+            });
         }
 
         abstract String getConsistencyFile() throws IOException;
@@ -156,31 +185,28 @@ class Consistency {
 
             // If EDID is already logged, skip it.
             if (!modEDIDlist.containsKey(EDID)) {
-                if (set.contains(id)) {
-                    // FormID conflict
-                    String offendingEDID = "";
-                    for (String item : modEDIDlist.keySet()) {
-                        if (modEDIDlist.get(item).equals(id)) {
-                            offendingEDID = item;
-                            break;
-                        }
-                    }
-                    conflicts.put(id, EDID);
-                    conflicts.put(id, offendingEDID);
-                    if (SPGlobal.logging()) {
-                        SPGlobal.logSpecial(LogTypes.CONSISTENCY, header, "!!!>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>");
-                        SPGlobal.logSpecial(LogTypes.CONSISTENCY, header, "!!!>>> Duplicate FormID warning.  ID: " + id + "  EDID: " + EDID + " and EDID2: " + offendingEDID);
-                        SPGlobal.logSpecial(LogTypes.CONSISTENCY, header, "!!!>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>");
-                    }
+                String offendingEDID = set.get(id);
+                if (offendingEDID != null) {
+                    conflict(id, EDID, offendingEDID);
                 }
                 modEDIDlist.put(EDID, id);
-                set.add(id);
+                set.put(id, EDID);
                 return true;
             } else {
                 return false;
             }
         }
 
+        void conflict(FormID id, String EDID, String offendingEDID) {
+            conflicts.put(id, EDID);
+            conflicts.put(id, offendingEDID);
+            if (SPGlobal.logging()) {
+                SPGlobal.logSpecial(LogTypes.CONSISTENCY, header, "!!!>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>");
+                SPGlobal.logSpecial(LogTypes.CONSISTENCY, header, "!!!>>> Duplicate FormID warning.  ID: " + id + "  EDID: " + EDID + " and EDID2: " + offendingEDID);
+                SPGlobal.logSpecial(LogTypes.CONSISTENCY, header, "!!!>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>");
+            }
+        }
+
         abstract void export() throws IOException;
 
         abstract void remove(String edid);
@@ -221,7 +247,7 @@ class Consistency {
                     }
                     edidConflicts.remove(found.get(0));
                     for (String unusedEDID : edidConflicts) {
-                        consistency.remove(unusedEDID);
+                        consistency().remove(unusedEDID);
                     }
                 }
                 if (SPGlobal.logging()) {
@@ -315,7 +341,7 @@ class Consistency {
 
         @Override
         boolean importConsistency(boolean globalOnly) throws IOException {
-            if (!imported) {
+            if (!isImported()) {
                 storage.put(SPGlobal.getGlobalPatch().getInfo(), new HashMap<>());
             }
             File f = new File(getConsistencyFile() + "V2");
@@ -538,4 +564,295 @@ class Consistency {
             }
         }
     }
+
+    /**
+     * Keeps the EDID/FormID pairs in a hashed index file that is looked up in
+     * place rather than parsed, plus a journal of the changes made since the
+     * index was last written. Exporting appends to the journal, and only
+     * rewrites the index once the journal has grown large.
+     */
+    static class ConsistencyV4 extends ConsistencyVersion {
+
+        static final int compactThreshold = 4096;
+        static final byte journalPut = 1;
+        static final byte journalRemove = 2;
+        ConsistencyIndex index;
+        // Changes on top of the index, from the journal or from this run
+        final Map<String, FormID> storage = new HashMap<>();
+        final Set<String> removed = new HashSet<>();
+        // EDIDs changed this run that are not in the journal yet
+        final Set<String> pending = new LinkedHashSet<>();
+        int journaled = 0;
+        boolean compact = false;
+        // Whether the index and journal on disk have been read in yet
+        boolean loaded = false;
+
+        @Override
+        FormID getOldForm(String edid) {
+            FormID out = storage.get(edid);
+            if (out != null || index == null || removed.contains(edid)) {
+                return out;
+            }
+            int entry = index.find(edid);
+            return entry == -1 ? null : index.getForm(entry);
+        }
+
+        /**
+         * @param id FormID to look up.
+         * @return The EDID currently holding the FormID, or null if it is free.
+         */
+        String ownerOf(FormID id) {
+            String out = set.get(id);
+            if (out != null || index == null) {
+                return out;
+            }
+            int entry = index.find(id, this::isLive);
+            return entry == -1 ? null : index.edid(entry);
+        }
+
+        boolean isLive(int entry) {
+            String edid = index.edid(entry);
+            return !removed.contains(edid) && !storage.containsKey(edid);
+        }
+
+        @Override
+        boolean requestID(FormID id) {
+            return ownerOf(id) == null;
+        }
+
+        @Override
+        void markUsed(FormIDAllocator allocator, Mod mod) {
+            super.markUsed(allocator, mod);
+            if (index != null) {
+                // Removed entries get marked too; that only costs a few IDs
+                ModListing listing = mod.getInfo();
+                for (int i = 0; i < index.size(); i++) {
+                    if (listing.equals(index.master(i))) {
+                        allocator.markUsed(index.form(i));
+                    }
+                }
+            }
+        }
+
+        @Override
+        String getConsistencyFile() throws IOException {
+            File myDocs = SPGlobal.getSkyProcDocuments();
+            return myDocs.getPath() + "\\ConsistencyV4\\" + SPGlobal.getGlobalPatch().getName() + "_Consistency";
+        }
+
+        File getJournalFile() throws IOException {
+            return new File(getConsistencyFile() + ".journal");
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            index = null;
+            storage.clear();
+            removed.clear();
+            pending.clear();
+            journaled = 0;
+            compact = false;
+            loaded = false;
+        }
+
+        @Override
+        boolean insert(String EDID, FormID id) {
+            if (getOldForm(EDID) != null) {
+                return false;
+            }
+            String offendingEDID = ownerOf(id);
+            if (offendingEDID != null) {
+                conflict(id, EDID, offendingEDID);
+            }
+            put(EDID, id);
+            pending.add(EDID);
+            return true;
+        }
+
+        void put(String EDID, FormID id) {
+            storage.put(EDID, id);
+            removed.remove(EDID);
+            set.put(id, EDID);
+        }
+
+        void drop(String edid) {
+            FormID id = getOldForm(edid);
+            storage.remove(edid);
+            removed.add(edid);
+            if (id != null && edid.equals(set.get(id))) {
+                set.remove(id);
+            }
+        }
+
+        @Override
+        void remove(String edid) {
+            if (getOldForm(edid) != null) {
+                drop(edid);
+                pending.add(edid);
+            }
+        }
+
+        @Override
+        void export() {
+            if (SPGlobal.logging()) {
+                SPGlobal.logMain(header, "Exporting Consistency file.");
+            }
+            if (SPGlobal.testing) {
+                return;
+            }
+            pruneConflicts();
+            try {
+                save();
+            } catch (IOException ex) {
+                SPGlobal.logException(ex);
+                SPGlobal.logSpecial(LogTypes.CONSISTENCY, header, "Error exporting Consistency file.");
+                JOptionPane.showMessageDialog(null, "<html>There was an error exporting the consistency information.<br><br>"
+                        + "This means your savegame has a good chance of having mismatched records the next<br>"
+                        + "time you run the patcher.</html>");
+            }
+        }
+
+        /**
+         * Appends this run's changes to the journal, or compacts everything
+         * into a fresh index once the journal has grown large.
+         */
+        void save() throws IOException {
+            // Compacting without what is already on disk would throw it away
+            importConsistency(false);
+            File f = new File(getConsistencyFile());
+            f.getParentFile().mkdirs();
+            if (compact || index == null
+                    || journaled + pending.size() > Math.max(compactThreshold, index.size() / 8)) {
+                compact(f);
+            } else {
+                appendJournal(getJournalFile());
+            }
+        }
+
+        /**
+         * Writes the index and journal together into a fresh index, and
+         * removes the journal.
+         */
+        void compact(File f) throws IOException {
+            if (SPGlobal.logging()) {
+                SPGlobal.logSpecial(LogTypes.CONSISTENCY, header, "Compacting consistency journal into the index.");
+            }
+            Map<String, FormID> all = new HashMap<>(storage);
+            if (index != null) {
+                for (int i = 0; i < index.size(); i++) {
+                    String edid = index.edid(i);
+                    if (!removed.contains(edid) && !all.containsKey(edid)) {
+                        all.put(edid, index.getForm(i));
+                    }
+                }
+            }
+            File tmp = new File(f.getPath() + "Tmp");
+            ConsistencyIndex written = ConsistencyIndex.write(tmp, all);
+            Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            File journal = getJournalFile();
+            if (journal.isFile()) {
+                journal.delete();
+            }
+            index = written;
+            storage.clear();
+            removed.clear();
+            pending.clear();
+            journaled = 0;
+            compact = false;
+        }
+
+        void appendJournal(File journal) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal, true)))) {
+                for (String edid : pending) {
+                    FormID id = getOldForm(edid);
+                    if (id != null) {
+                        out.write(journalPut);
+                        out.writeUTF(edid);
+                        out.writeBoolean(id.getMaster().getMasterTag());
+                        out.writeUTF(id.getMaster().printNoSuffix());
+                        out.writeInt(id.form & 0xFFFFFF);
+                    } else {
+                        out.write(journalRemove);
+                        out.writeUTF(edid);
+                    }
+                    journaled++;
+                }
+            }
+            pending.clear();
+        }
+
+        void replayJournal(File journal) throws IOException {
+            if (!journal.isFile()) {
+                return;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+                int op;
+                while ((op = in.read()) != -1) {
+                    String edid = in.readUTF();
+                    FormID id = null;
+                    if (op == journalPut) {
+                        boolean master = in.readBoolean();
+                        ModListing listing = new ModListing(in.readUTF(), master);
+                        id = new FormID(in.readInt(), listing);
+                    }
+                    journaled++;
+                    // Changes made this run before the import win over older ones
+                    if (pending.contains(edid)) {
+                        continue;
+                    }
+                    if (id != null) {
+                        put(edid, id);
+                    } else {
+                        drop(edid);
+                    }
+                }
+            } catch (EOFException ex) {
+                // A run that died mid-write leaves a partial entry at the end.
+                // Rewrite everything next export rather than appending after it.
+                compact = true;
+            }
+        }
+
+        /**
+         * Reads the index and journal in, once per session; later calls do
+         * nothing. A V4 file is kept per global patch and only holds what was
+         * handed out for it, so there is nothing to split between the
+         * globalOnly passes and either one loads the whole file.
+         */
+        @Override
+        boolean importConsistency(boolean globalOnly) throws IOException {
+            if (loaded) {
+                return index != null || journaled > 0;
+            }
+            File f = new File(getConsistencyFile());
+            File journal = getJournalFile();
+            if (!f.isFile() && !journal.isFile()) {
+                upgrade(globalOnly);
+                loaded = true;
+                return false;
+            }
+            if (SPGlobal.logging()) {
+                SPGlobal.logSpecial(LogTypes.CONSISTENCY_IMPORT, "Import", "Importing v4 consistency file.");
+            }
+            index = ConsistencyIndex.read(f);
+            replayJournal(journal);
+            loaded = true;
+            if (SPGlobal.logging()) {
+                SPGlobal.logSpecial(LogTypes.CONSISTENCY_IMPORT, "Import", "  " + (index == null ? 0 : index.size()) + " indexed, " + journaled + " journaled.");
+            }
+            return true;
+        }
+
+        void upgrade(boolean globalOnly) throws IOException {
+            ConsistencyV3 v3 = new ConsistencyV3();
+            v3.importConsistency(globalOnly);
+            if (SPGlobal.logging()) {
+                SPGlobal.logSpecial(LogTypes.CONSISTENCY_IMPORT, "Import", "Upgrading from v3 consistency.");
+            }
+            for (Entry<String, FormID> entry : v3.storage.entrySet()) {
+                insert(entry.getKey(), entry.getValue());
+            }
+        }
+    }
 }
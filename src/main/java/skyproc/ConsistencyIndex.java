@@ -0,0 +1,261 @@
+package skyproc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * A read-only EDID/FormID table in the V4 consistency format. The file is
+ * read in one go and entries are only decoded when looked up.<br><br>
+ * Layout: "SPC4", entry count, table size, offset of the master table, EDID
+ * hash table, FormID hash table, entries (form, EDID offset, EDID length), the
+ * EDID bytes and finally the master table (count, then master flag and name of
+ * each). Table slots hold entry index + 1, so zero marks an empty slot.<br>
+ * An entry's form holds the object ID in its low 3 bytes and its position in
+ * the file's own master table in the top byte, so entries don't depend on the
+ * master list the global patch has at the time.
+ *
+ * @author Justin Swanson
+ */
+class ConsistencyIndex {
+
+    static final byte[] magic = {'S', 'P', 'C', '4'};
+    static final int headerSize = 16;
+    static final int entrySize = 10;
+    final ByteBuffer data;
+    final int count;
+    final int tableSize;
+    final int entriesStart;
+    final int stringsStart;
+    final ModListing[] masters;
+
+    ConsistencyIndex(ByteBuffer data) throws IOException {
+        this.data = data;
+        byte[] check = new byte[4];
+        data.duplicate().get(check);
+        if (!Arrays.equals(check, magic)) {
+            throw new IOException("Not a V4 consistency file.");
+        }
+        count = data.getInt(4);
+        tableSize = data.getInt(8);
+        entriesStart = headerSize + tableSize * 8;
+        stringsStart = entriesStart + count * entrySize;
+        ByteBuffer in = data.duplicate();
+        in.position(data.getInt(12));
+        masters = new ModListing[in.getInt()];
+        for (int i = 0; i < masters.length; i++) {
+            boolean master = in.get() != 0;
+            byte[] name = new byte[in.getShort() & 0xFFFF];
+            in.get(name);
+            masters[i] = new ModListing(new String(name, StandardCharsets.UTF_8), master);
+        }
+    }
+
+    /**
+     * @param f Index file to read.
+     * @return The index, or null if the file does not exist.
+     * @throws IOException
+     */
+    static ConsistencyIndex read(File f) throws IOException {
+        if (!f.isFile()) {
+            return null;
+        }
+        try (FileChannel in = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer data = ByteBuffer.allocate((int) in.size());
+            while (data.hasRemaining()) {
+                if (in.read(data, data.position()) < 0) {
+                    throw new IOException("Consistency index ended early.");
+                }
+            }
+            data.position(0);
+            return new ConsistencyIndex(data);
+        }
+    }
+
+    /**
+     * Writes a fresh index holding the given entries.
+     *
+     * @param f       File to write to.
+     * @param entries EDIDs and the FormIDs assigned to them.
+     * @return The index that was written.
+     * @throws IOException
+     */
+    static ConsistencyIndex write(File f, Map<String, FormID> entries) throws IOException {
+        int count = entries.size();
+        int tableSize = 16;
+        while (tableSize < count * 2) {
+            tableSize <<= 1;
+        }
+        byte[][] names = new byte[count][];
+        int stringsLength = 0;
+        Map<ModListing, Integer> masterIndices = new LinkedHashMap<>();
+        int i = 0;
+        for (Map.Entry<String, FormID> e : entries.entrySet()) {
+            names[i] = e.getKey().getBytes(StandardCharsets.UTF_8);
+            stringsLength += names[i].length;
+            ModListing master = e.getValue().getMaster();
+            if (master == null) {
+                throw new IOException("FormID " + e.getValue() + " for " + e.getKey() + " has no master.");
+            }
+            masterIndices.putIfAbsent(master, masterIndices.size());
+            i++;
+        }
+        if (masterIndices.size() > 256) {
+            throw new IOException("Consistency entries span more than 256 masters.");
+        }
+        byte[][] masterNames = new byte[masterIndices.size()][];
+        int mastersLength = 4;
+        i = 0;
+        for (ModListing master : masterIndices.keySet()) {
+            masterNames[i] = master.printNoSuffix().getBytes(StandardCharsets.UTF_8);
+            mastersLength += 3 + masterNames[i].length;
+            i++;
+        }
+        int entriesStart = headerSize + tableSize * 8;
+        int mastersStart = entriesStart + count * entrySize + stringsLength;
+        ByteBuffer out = ByteBuffer.allocate(mastersStart + mastersLength);
+        out.put(magic);
+        out.putInt(count);
+        out.putInt(tableSize);
+        out.putInt(mastersStart);
+        int stringOffset = 0;
+        i = 0;
+        for (Map.Entry<String, FormID> e : entries.entrySet()) {
+            FormID id = e.getValue();
+            int form = (id.form & 0xFFFFFF) | (masterIndices.get(id.getMaster()) << 24);
+            place(out, headerSize, tableSize, edidHash(e.getKey()), i);
+            place(out, headerSize + tableSize * 4, tableSize, formHash(form), i);
+            out.position(entriesStart + i * entrySize);
+            out.putInt(form);
+            out.putInt(stringOffset);
+            out.putShort((short) names[i].length);
+            out.position(entriesStart + count * entrySize + stringOffset);
+            out.put(names[i]);
+            stringOffset += names[i].length;
+            i++;
+        }
+        out.putInt(masterNames.length);
+        i = 0;
+        for (ModListing master : masterIndices.keySet()) {
+            out.put((byte) (master.getMasterTag() ? 1 : 0));
+            out.putShort((short) masterNames[i].length);
+            out.put(masterNames[i]);
+            i++;
+        }
+        out.position(0);
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+        out.position(0);
+        return new ConsistencyIndex(out);
+    }
+
+    static void place(ByteBuffer out, int table, int tableSize, int hash, int entry) {
+        int slot = hash & (tableSize - 1);
+        while (out.getInt(table + slot * 4) != 0) {
+            slot = (slot + 1) & (tableSize - 1);
+        }
+        out.putInt(table + slot * 4, entry + 1);
+    }
+
+    static int edidHash(String edid) {
+        int h = edid.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int formHash(int form) {
+        int h = (form & 0xFFFFFF) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    int size() {
+        return count;
+    }
+
+    int form(int entry) {
+        return data.getInt(entriesStart + entry * entrySize);
+    }
+
+    String edid(int entry) {
+        int pos = entriesStart + entry * entrySize;
+        byte[] name = new byte[data.getShort(pos + 8) & 0xFFFF];
+        ByteBuffer in = data.duplicate();
+        in.position(stringsStart + data.getInt(pos + 4));
+        in.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    boolean edidEquals(int entry, byte[] name) {
+        int pos = entriesStart + entry * entrySize;
+        if ((data.getShort(pos + 8) & 0xFFFF) != name.length) {
+            return false;
+        }
+        int start = stringsStart + data.getInt(pos + 4);
+        for (int i = 0; i < name.length; i++) {
+            if (data.get(start + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param edid EDID to look for.
+     * @return Entry holding the EDID, or -1.
+     */
+    int find(String edid) {
+        byte[] name = edid.getBytes(StandardCharsets.UTF_8);
+        int slot = edidHash(edid) & (tableSize - 1);
+        int entry;
+        while ((entry = data.getInt(headerSize + slot * 4)) != 0) {
+            if (edidEquals(entry - 1, name)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & (tableSize - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @param id     FormID to look for.
+     * @param accept Filter for entries, as a FormID can be listed more than
+     *               once.
+     * @return First accepted entry holding the FormID, or -1.
+     */
+    int find(FormID id, IntPredicate accept) {
+        int table = headerSize + tableSize * 4;
+        int slot = formHash(id.form) & (tableSize - 1);
+        int entry;
+        while ((entry = data.getInt(table + slot * 4)) != 0) {
+            int form = form(entry - 1);
+            if (((form ^ id.form) & 0xFFFFFF) == 0 && masters[form >>> 24].equals(id.getMaster()) && accept.test(entry - 1)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & (tableSize - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @param entry Entry to read.
+     * @return The master the entry's FormID originates from.
+     */
+    ModListing master(int entry) {
+        return masters[form(entry) >>> 24];
+    }
+
+    FormID getForm(int entry) {
+        int form = form(entry);
+        return new FormID(form & 0xFFFFFF, masters[form >>> 24]);
+    }
+}
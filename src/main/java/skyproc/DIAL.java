@@ -55,10 +55,17 @@ public class DIAL extends MajorRecord {
 
     @Override
     void export(ModExporter out) throws IOException {
-        subRecords.setSubInt("TIFC", grup.getRecords().size());
+        subRecords.setSubInt("TIFC", grup.records().size());
         super.export(out);
     }
 
+    @Override
+    int getContentLength(ModExporter out) {
+        // Set before measuring, as the measurement is reused by export()
+        subRecords.setSubInt("TIFC", grup.records().size());
+        return super.getContentLength(out);
+    }
+
     // Get/Set
 
 
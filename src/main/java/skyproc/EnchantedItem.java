@@ -141,12 +141,14 @@ public abstract class EnchantedItem extends MajorRecordDescription {
             range = in.extractFloat();
             perkType.parseData(in, srcMod);
 
-            logMod(srcMod, "", "SPIT record: ");
-            logMod(srcMod, "", "  " + "Base Spell Cost: " + baseCost + ", flags: " + flags
-                    + ", Base Type: " + baseType + ", Spell Charge Time: " + chargeTime);
-            logMod(srcMod, "", "  " + "cast type: " + castType + ", targetType: " + targetType
-                    + ", Cast Duration: " + castDuration
-                    + ", Spell Range: " + range + ", Perk for Spell: " + perkType);
+            if (loggingMod()) {
+                logMod(srcMod, "", "SPIT record: ");
+                logMod(srcMod, "", "  " + "Base Spell Cost: " + baseCost + ", flags: " + flags
+                        + ", Base Type: " + baseType + ", Spell Charge Time: " + chargeTime);
+                logMod(srcMod, "", "  " + "cast type: " + castType + ", targetType: " + targetType
+                        + ", Cast Duration: " + castDuration
+                        + ", Spell Range: " + range + ", Perk for Spell: " + perkType);
+            }
 
             valid = true;
         }
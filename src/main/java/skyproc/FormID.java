@@ -6,8 +6,12 @@ import lev.Ln;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class represents a FormID that distinguishes one record from another.
@@ -22,8 +26,12 @@ public class FormID implements Comparable, Serializable {
      * FormID to compare to when determining NULL formIDs.
      */
     public static final FormID NULL = new FormID();
-    static final ArrayList<FormID> allIDs = new ArrayList<>();
-    byte[] form = new byte[4];
+    static final List<FormID> allIDs = Collections.synchronizedList(new ArrayList<>());
+    // Interned masters, so a FormID can be packed into a single long key
+    static final Map<ModListing, Integer> masterKeys = new ConcurrentHashMap<>();
+    static final AtomicInteger lastMasterKey = new AtomicInteger();
+    // Object ID in the low 3 bytes, mod index as it appears on disk in the top byte
+    int form = 0;
     ModListing master = null;
 
     /**
@@ -82,7 +90,7 @@ public class FormID implements Comparable, Serializable {
 
     FormID(int id, ModListing master) {
         this();
-        setInternal(Ln.toByteArray(id));
+        form = id;
         this.master = master;
     }
 
@@ -92,7 +100,7 @@ public class FormID implements Comparable, Serializable {
      * @param in
      */
     public FormID(FormID in) {
-        System.arraycopy(in.form, 0, form, 0, in.form.length);
+        form = in.form;
         master = in.master;
     }
 
@@ -143,24 +151,49 @@ public class FormID implements Comparable, Serializable {
     }
 
     private void setInternal(byte[] id) {
-        form = id;
-        if (id.length > 4) {
-            form = Arrays.copyOfRange(form, 0, 3);
-        } else if (id.length < 4) {
-            form = new byte[4];
-            System.arraycopy(id, 0, form, 0, id.length);
+        int length = id.length > 4 ? 3 : id.length;
+        int packed = 0;
+        for (int i = 0; i < length; i++) {
+            packed |= (id[i] & 0xFF) << (8 * i);
         }
+        form = packed;
     }
 
     final void setInternal(byte[] id, Mod srcMod) {
         setInternal(id);
+        if (srcMod instanceof RecordCopier.Scratch) {
+            setTo(((RecordCopier.Scratch) srcMod).formIDs.get(form));
+        } else {
+            standardize(srcMod);
+        }
+    }
+
+    final void setInternal(int id, Mod srcMod) {
+        form = id;
         standardize(srcMod);
     }
 
     void export(ModExporter out) throws IOException {
-        standardize(out.getSourceMod());
-        adjustMasterIndex(out.getExportMod());
-        out.write(getInternal(true), 4);
+        out.write(exportForm(out), 4);
+    }
+
+    /**
+     * @return The form as written by out, with the index its master has in
+     * the export mod. This FormID is left as is, as records exported on other
+     * threads may share it.
+     */
+    int exportForm(ModExporter out) {
+        if (out.isCopying()) {
+            return out.copy(this);
+        }
+        ModListing exportMaster = master;
+        if (exportMaster == null) {
+            if (isNull() || out.getSourceMod() == null) {
+                return form;
+            }
+            exportMaster = out.getSourceMod().getNthMaster((byte) (form >>> 24));
+        }
+        return (form & 0xFFFFFF) | ((out.getExportMod().getMasterIndex(exportMaster) & 0xFF) << 24);
     }
 
     void parseData(LImport in, Mod srcMod) {
@@ -183,11 +216,20 @@ public class FormID implements Comparable, Serializable {
     }
 
     byte[] getInternal(Boolean masterIndex) {
-        if (!masterIndex) {
-            return Arrays.copyOfRange(form, 0, 3);
-        } else {
-            return form;
+        byte[] out = new byte[masterIndex ? 4 : 3];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (byte) (form >>> (8 * i));
         }
+        return out;
+    }
+
+    /**
+     * @return The object ID and interned master packed into one value.
+     * Unique for FormIDs that are equal, for use as a primitive map key.
+     */
+    long key() {
+        long masterKey = master == null ? 0 : masterKeys.computeIfAbsent(master, k -> lastMasterKey.incrementAndGet());
+        return (masterKey << 24) | (form & 0xFFFFFF);
     }
 
     /**
@@ -232,14 +274,10 @@ public class FormID implements Comparable, Serializable {
 
     void standardize(Mod srcMod) {
         if (master == null) {
-            master = srcMod.getNthMaster(form[3]);
+            master = srcMod.getNthMaster((byte) (form >>> 24));
         }
     }
 
-    void adjustMasterIndex(Mod srcMod) {
-        form[3] = (byte) srcMod.getMasterIndex(master);
-    }
-
     boolean isValid() {
         return !equals(NULL);
     }
@@ -265,12 +303,10 @@ public class FormID implements Comparable, Serializable {
             return false;
         }
         final FormID other = (FormID) obj;
-        for (int i = 0; i < 3; i++) {
-            if (form[i] != other.form[i]) {
-                return false;
-            }
+        if (((form ^ other.form) & 0xFFFFFF) != 0) {
+            return false;
         }
-        return Objects.equals(this.master, other.master);
+        return this.master == other.master || Objects.equals(this.master, other.master);
     }
 
     /**
@@ -284,7 +320,7 @@ public class FormID implements Comparable, Serializable {
     @Override
     public int hashCode() {
         int hash = 7;
-        hash = 97 * hash + Arrays.hashCode(Arrays.copyOf(this.form, 3));
+        hash = 97 * hash + (this.form & 0xFFFFFF);
         hash = 97 * hash + (this.master != null ? this.master.hashCode() : 0);
         return hash;
     }
@@ -300,7 +336,7 @@ public class FormID implements Comparable, Serializable {
         }
         FormID rhs = (FormID) o;
         if (master.equals(rhs.master)) {
-            return Ln.arrayToInt(form) - Ln.arrayToInt(rhs.form);
+            return form - rhs.form;
         } else {
             return master.compareTo(rhs.master);
         }
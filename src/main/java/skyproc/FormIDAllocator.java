@@ -0,0 +1,116 @@
+package skyproc;
+
+import java.util.BitSet;
+
+/**
+ * Hands out object IDs from the 24 bit FormID space of a single mod. Taken
+ * IDs are tracked in a bitmap, so the next free one is found without probing
+ * each candidate in turn.
+ *
+ * @author Justin Swanson
+ */
+class FormIDAllocator {
+
+    static final int space = 1 << 24;
+    final BitSet used = new BitSet();
+    final int first;
+    int cursor;
+
+    /**
+     * @param first Lowest object ID that may be handed out.
+     */
+    FormIDAllocator(int first) {
+        this.first = first;
+        cursor = first;
+    }
+
+    /**
+     * @param id Object ID to mark as taken. Only the low 24 bits are used.
+     */
+    void markUsed(int id) {
+        used.set(id & 0xFFFFFF);
+    }
+
+    /**
+     * Finds the next free ID after the last one handed out, wrapping around
+     * to the start once the end of the space is reached.
+     *
+     * @return A free object ID, now marked as taken, or -1 if none are left.
+     */
+    int next() {
+        int id = used.nextClearBit(cursor);
+        if (id >= space) {
+            id = used.nextClearBit(first);
+            if (id >= space) {
+                return -1;
+            }
+        }
+        used.set(id);
+        cursor = id + 1;
+        return id;
+    }
+
+    /**
+     * @return Number of IDs that can still be handed out.
+     */
+    int remaining() {
+        int taken = used.cardinality();
+        for (int i = used.nextSetBit(0); i != -1 && i < first; i = used.nextSetBit(i + 1)) {
+            taken--;
+        }
+        return space - first - taken;
+    }
+
+    /**
+     * @return Number of separate runs of free IDs.
+     */
+    int freeRanges() {
+        int ranges = 0;
+        int start = used.nextClearBit(first);
+        while (start < space) {
+            ranges++;
+            int end = used.nextSetBit(start);
+            if (end == -1) {
+                break;
+            }
+            start = used.nextClearBit(end);
+        }
+        return ranges;
+    }
+
+    /**
+     * @return Length of the longest run of free IDs.
+     */
+    int largestFreeRange() {
+        int largest = 0;
+        int start = used.nextClearBit(first);
+        while (start < space) {
+            int end = used.nextSetBit(start);
+            if (end == -1 || end > space) {
+                end = space;
+            }
+            largest = Math.max(largest, end - start);
+            start = used.nextClearBit(end);
+        }
+        return largest;
+    }
+
+    /**
+     * @return Fraction of the free IDs lying outside the longest free run. 0
+     * when all free IDs are contiguous.
+     */
+    double fragmentation() {
+        int remaining = remaining();
+        if (remaining == 0) {
+            return 0;
+        }
+        return 1 - (double) largestFreeRange() / remaining;
+    }
+
+    @Override
+    public String toString() {
+        return "FormID space: " + remaining() + " of " + (space - first) + " IDs free in "
+                + freeRanges() + " ranges, largest " + largestFreeRange()
+                + String.format(", %.1f%% fragmented.", fragmentation() * 100);
+    }
+}
@@ -0,0 +1,206 @@
+package skyproc;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * A map from FormID to value, keyed on the FormID's packed key rather than
+ * the FormID object. Open addressing over parallel arrays, so it holds no
+ * entry objects and no reference to the FormIDs it was filled with.<br>
+ * Null values are not allowed.
+ *
+ * @param <V> Type of value stored.
+ * @author Justin Swanson
+ */
+class FormIDMap<V> implements Iterable<V> {
+
+    long[] keys;
+    Object[] values;
+    int size = 0;
+
+    FormIDMap() {
+        this(16);
+    }
+
+    FormIDMap(int expected) {
+        int capacity = 16;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (keys.length - 1);
+    }
+
+    int find(long key) {
+        int i = slot(key);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & (keys.length - 1);
+        }
+        return -1;
+    }
+
+    V get(FormID id) {
+        int i = find(id.key());
+        return i == -1 ? null : (V) values[i];
+    }
+
+    boolean containsKey(FormID id) {
+        return find(id.key()) != -1;
+    }
+
+    V put(FormID id, V value) {
+        return put(id.key(), value);
+    }
+
+    V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("FormIDMap does not take null values.");
+        }
+        int i = slot(key);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & (keys.length - 1);
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    V computeIfAbsent(FormID id, Function<FormID, V> function) {
+        long key = id.key();
+        int i = find(key);
+        if (i != -1) {
+            return (V) values[i];
+        }
+        V value = function.apply(id);
+        put(key, value);
+        return value;
+    }
+
+    V remove(FormID id) {
+        int i = find(id.key());
+        if (i == -1) {
+            return null;
+        }
+        V old = (V) values[i];
+        // Shift the rest of the probe run back so lookups don't stop early
+        int gap = i;
+        int next = (gap + 1) & (keys.length - 1);
+        while (values[next] != null) {
+            int home = slot(keys[next]);
+            if (((next - home) & (keys.length - 1)) >= ((next - gap) & (keys.length - 1))) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & (keys.length - 1);
+        }
+        values[gap] = null;
+        size--;
+        return old;
+    }
+
+    /**
+     * Grows the table ahead of time so that adding up to the given number of
+     * keys will not rehash.
+     *
+     * @param expected Number of keys the map will hold.
+     */
+    void ensureCapacity(int expected) {
+        int capacity = keys.length;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        if (capacity != keys.length) {
+            resize(capacity);
+        }
+    }
+
+    void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param action Run with each packed key, in no particular order.
+     */
+    void forEachKey(LongConsumer action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i]);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * @return Iterator over the values, in no particular order.
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+
+            int i = advance(0);
+
+            final int advance(int from) {
+                while (from < values.length && values[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return i < values.length;
+            }
+
+            @Override
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                V out = (V) values[i];
+                i = advance(i + 1);
+                return out;
+            }
+        };
+    }
+}
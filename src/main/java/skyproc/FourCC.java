@@ -0,0 +1,104 @@
+package skyproc;
+
+/**
+ * Record types packed into an int, first character in the low byte, the same
+ * order they are stored in on disk. Packed types can be read straight off
+ * the input and compared without making a String for each one.
+ *
+ * @author Justin Swanson
+ */
+class FourCC {
+
+    static volatile Table table = new Table(1 << 10);
+
+    static class Entry {
+
+        final int code;
+        final String name;
+
+        Entry(int code, String name) {
+            this.code = code;
+            this.name = name;
+        }
+    }
+
+    static class Table {
+
+        final Entry[] entries;
+        int size = 0;
+
+        Table(int capacity) {
+            entries = new Entry[capacity];
+        }
+    }
+
+    /**
+     * @param type Four character record type.
+     * @return The packed type.
+     */
+    static int of(String type) {
+        return (type.charAt(0) & 0xFF)
+                | (type.charAt(1) & 0xFF) << 8
+                | (type.charAt(2) & 0xFF) << 16
+                | (type.charAt(3) & 0xFF) << 24;
+    }
+
+    static int slot(int code, int length) {
+        int h = code * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (length - 1);
+    }
+
+    /**
+     * @param code Packed type.
+     * @return The type as a String. The same instance is returned for every
+     * call with the same type.
+     */
+    static String name(int code) {
+        Entry[] entries = table.entries;
+        for (int slot = slot(code, entries.length); ; slot = (slot + 1) & (entries.length - 1)) {
+            Entry e = entries[slot];
+            if (e == null) {
+                return add(code);
+            } else if (e.code == code) {
+                return e.name;
+            }
+        }
+    }
+
+    static synchronized String add(int code) {
+        Table t = table;
+        int slot = slot(code, t.entries.length);
+        while (t.entries[slot] != null) {
+            if (t.entries[slot].code == code) {
+                return t.entries[slot].name;
+            }
+            slot = (slot + 1) & (t.entries.length - 1);
+        }
+        char[] chars = {(char) (code & 0xFF), (char) (code >>> 8 & 0xFF), (char) (code >>> 16 & 0xFF), (char) (code >>> 24)};
+        Entry e = new Entry(code, new String(chars).intern());
+        if ((t.size + 1) * 2 > t.entries.length) {
+            // Readers keep using the old table until the new one is complete
+            Table grown = new Table(t.entries.length * 2);
+            for (Entry old : t.entries) {
+                if (old != null) {
+                    place(grown, old);
+                }
+            }
+            place(grown, e);
+            table = grown;
+        } else {
+            t.entries[slot] = e;
+            t.size++;
+        }
+        return e.name;
+    }
+
+    static void place(Table t, Entry e) {
+        int slot = slot(e.code, t.entries.length);
+        while (t.entries[slot] != null) {
+            slot = (slot + 1) & (t.entries.length - 1);
+        }
+        t.entries[slot] = e;
+        t.size++;
+    }
+}
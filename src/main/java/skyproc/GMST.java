@@ -145,6 +145,12 @@ public class GMST extends MajorRecord {
         return super.getContentLength(isStringTabled);
     }
 
+    @Override
+    int getContentLength(ModExporter out) {
+        updateDATAtype();
+        return super.getContentLength(out);
+    }
+
     /**
      * @return The type of data this GMST contains.
      */
@@ -7,9 +7,17 @@ import skyproc.exceptions.BadRecord;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.zip.DataFormatException;
 
 /**
@@ -24,10 +32,19 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
     byte[] grupType = new byte[4];
     byte[] dateStamp = new byte[4];
     byte[] version = new byte[4];
-    final ArrayList<T> listRecords = new ArrayList<>();
-    final Map<FormID, T> mapRecords = new HashMap<>();
+    // Records in the order they were added.  Removing a record leaves a null
+    // behind in its slot until the list is next compacted.  While something
+    // outside may still be reading the list, the next change copies it first.
+    ArrayList<T> listRecords = new ArrayList<>();
+    // Iterators and spliterators over listRecords that haven't let go of it
+    int readers = 0;
+    final FormIDMap<T> mapRecords = new FormIDMap<>();
+    final FormIDMap<Integer> slots = new FormIDMap<>();
+    int removed = 0;
     final Map<String, T> edidRecords = new HashMap<>();
     final T prototype;
+    // Mod this is a top level GRUP of, if any
+    Mod mod;
 
     GRUP(T prototype) {
         this.prototype = prototype;
@@ -80,11 +97,15 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
         while (!in.isDone()) {
             extractMajor(in, srcMod);
         }
-        logMod(srcMod, toString(), "Data exhausted");
+        if (loggingMod()) {
+            logMod(srcMod, toString(), "Data exhausted");
+        }
     }
 
     MajorRecord extractMajor(LImport in, Mod srcMod) throws BadRecord, DataFormatException, BadParameter {
-        logMod(srcMod, toString(), "============== Extracting Next " + getContainedType() + " =============");
+        if (loggingMod()) {
+            logMod(srcMod, toString(), "============== Extracting Next " + getContainedType() + " =============");
+        }
         T item = (T) prototype.getNew();
         item.srcMod = srcMod;
         item.subRecords.setMajor(item);
@@ -95,7 +116,7 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
             // Add to GRUP
             if (item.isValid()) {
                 addRecord(item);
-            } else {
+            } else if (loggingMod()) {
                 logMod(srcMod, toString(), "Did not add " + getContainedType().toString() + " " + item + " because it was not valid.");
             }
 
@@ -111,7 +132,7 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
      * @return Number of records the GRUP contains
      */
     public int size() {
-        return listRecords.size();
+        return mapRecords.size();
     }
 
     /**
@@ -122,7 +143,7 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
     @Override
     public String print() {
         if (!isEmpty()) {
-            for (T t : mapRecords.values()) {
+            for (T t : mapRecords) {
                 t.toString();
             }
         }
@@ -132,7 +153,7 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
     @Override
     void export(ModExporter out) throws IOException {
         out.write(getType());
-        out.write(getContentLength(out.getExportMod().isFlag(Mod.Mod_Flags.STRING_TABLED)) + getHeaderLength(), getSizeLength());
+        out.write(getTotalLength(out), getSizeLength());
         out.write(contained);
         out.write(grupType);
         out.write(dateStamp);
@@ -152,7 +173,9 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
     ArrayList<FormID> allFormIDs() {
         ArrayList<FormID> out = new ArrayList<>();
         for (T item : listRecords) {
-            out.addAll(item.allFormIDs());
+            if (item != null) {
+                out.addAll(item.allFormIDs());
+            }
         }
         return out;
     }
@@ -172,15 +195,57 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
      * was contained.
      */
     public boolean removeRecord(FormID id) {
-        if (mapRecords.containsKey(id)) {
-            listRecords.remove(mapRecords.get(id));
-            MajorRecord r = mapRecords.get(id);
-            edidRecords.remove(r.getEDID().toUpperCase());
-            mapRecords.remove(id);
-            return true;
-        } else {
+        Integer slot = slots.remove(id);
+        if (slot == null) {
             return false;
         }
+        MajorRecord r = mapRecords.remove(id);
+        edidRecords.remove(r.getEDID().toUpperCase());
+        if (slot == listRecords.size() - 1) {
+            writable().remove((int) slot);
+        } else {
+            writable().set(slot, null);
+            if (++removed > 16 && removed * 2 > listRecords.size()) {
+                compact();
+            }
+        }
+        if (mod != null && mod.inDatabase) {
+            SPDatabase.unindex(mod, r);
+        }
+        return true;
+    }
+
+    /**
+     * Closes up the slots left behind by removed records, keeping the order of
+     * the rest.
+     */
+    void compact() {
+        writable();
+        int n = 0;
+        for (int i = 0; i < listRecords.size(); i++) {
+            T t = listRecords.get(i);
+            if (t != null) {
+                if (n != i) {
+                    listRecords.set(n, t);
+                    slots.put(t.getForm(), n);
+                }
+                n++;
+            }
+        }
+        listRecords.subList(n, listRecords.size()).clear();
+        removed = 0;
+    }
+
+    /**
+     * @return The record list, copied first if an iterator may still be
+     * stepping through it.
+     */
+    ArrayList<T> writable() {
+        if (readers > 0) {
+            listRecords = new ArrayList<>(listRecords);
+            readers = 0;
+        }
+        return listRecords;
     }
 
     /**
@@ -217,21 +282,48 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
 
     /**
      * Adds a record to the group, and does the following: 1) Standardizes the
-     * record's FormIDs to the database the GRUP is contained in.
+     * record's FormIDs to the database the GRUP is contained in.<br> A record
+     * with the same FormID already in the GRUP is replaced in place.
      *
      * @param item Record to add to the GRUP.
      */
     public void addRecord(T item) {
-        removeRecord(item);
-        mapRecords.put(item.getForm(), item);
+        FormID id = item.getForm();
+        T old = mapRecords.put(id, item);
+        if (old != null) {
+            edidRecords.remove(old.getEDID().toUpperCase());
+            writable().set(slots.get(id), item);
+            if (mod != null && mod.inDatabase) {
+                SPDatabase.unindex(mod, old);
+            }
+        } else {
+            slots.put(id, listRecords.size());
+            writable().add(item);
+        }
         edidRecords.put(item.getEDID().toUpperCase(), item);
-        listRecords.add(item);
+        if (mod != null && mod.inDatabase) {
+            SPDatabase.index(mod, getContainedType(), item);
+        }
     }
 
     /**
-     * @return A list of all records in the GRUP
+     * @return A copy of the list of all records in the GRUP.  Records may be
+     * added to or removed from the GRUP while looping over it; the list keeps
+     * holding the records it had when it was returned.  Use iterator() or
+     * stream() to read the records without copying them.
      */
     public ArrayList<T> getRecords() {
+        return new ArrayList<>(records());
+    }
+
+    /**
+     * @return The record list with no gaps, for reading before the GRUP next
+     * changes.
+     */
+    ArrayList<T> records() {
+        if (removed > 0) {
+            compact();
+        }
         return listRecords;
     }
 
@@ -283,9 +375,23 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
      * Deletes all records from the GRUP.
      */
     public void clear() {
-        listRecords.clear();
+        if (mod != null && mod.inDatabase) {
+            for (T t : listRecords) {
+                if (t != null) {
+                    SPDatabase.unindex(mod, t);
+                }
+            }
+        }
+        if (readers > 0) {
+            listRecords = new ArrayList<>();
+            readers = 0;
+        } else {
+            listRecords.clear();
+        }
         mapRecords.clear();
+        slots.clear();
         edidRecords.clear();
+        removed = 0;
     }
 
     @Override
@@ -300,18 +406,38 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
      * @param rhs GRUP to copy records from.
      */
     public void merge(GRUP<T> rhs) {
+        merge(Collections.singletonList(rhs));
+    }
+
+    /**
+     * Takes all records from each GRUP in order and adds them to the GRUP, in
+     * a single pass. Any conflicting records (those whose FormIDs match) will
+     * end up with the last GRUP's version.
+     *
+     * @param rhs GRUPs to copy records from, in load order.
+     */
+    public void merge(Collection<? extends GRUP<T>> rhs) {
         if (logging() && SPGlobal.debugModMerge) {
             log(toString(), "Size before: " + numRecords());
         }
-        for (MajorRecord item : rhs) {
-//            if (logging() && SPGlobal.debugModMerge) {
-//                if (contains(item.getForm())) {
-//                    log.info("Replacing record " + item + " with one from " + rhs);
-//                } else {
-//                    log.info("Adding record " + item);
-//                }
-//            }
-            addRecord(item);
+        int expected = numRecords();
+        for (GRUP<T> g : rhs) {
+            if (g != null) {
+                expected += g.numRecords();
+            }
+        }
+        writable().ensureCapacity(expected);
+        mapRecords.ensureCapacity(expected);
+        slots.ensureCapacity(expected);
+        for (GRUP<T> g : rhs) {
+            if (g == null || g == this) {
+                continue;
+            }
+            for (T item : g.listRecords) {
+                if (item != null) {
+                    addRecord(item);
+                }
+            }
         }
         if (logging() && SPGlobal.debugModMerge) {
             log(toString(), "Size after: " + numRecords());
@@ -328,11 +454,22 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
         return 4;
     }
 
+    @Override
+    int getContentLength(ModExporter out) {
+        int length = 0;
+        for (T t : listRecords) {
+            if (t != null && t.isValid()) {
+                length += t.getTotalLength(out);
+            }
+        }
+        return length;
+    }
+
     @Override
     int getContentLength(boolean isStringTabled) {
         int length = 0;
         for (T t : listRecords) {
-            if (t.isValid()) {
+            if (t != null && t.isValid()) {
                 length += t.getTotalLength(isStringTabled);
             }
         }
@@ -341,12 +478,170 @@ public class GRUP<T extends MajorRecord> extends SubRecord<T> implements Iterabl
 
     /**
      * @return An iterator that steps through each record in the GRUP, in the
-     * order they were added.
+     * order they were added.  Records may be added or removed while iterating;
+     * the iterator keeps seeing the GRUP as it was when it was created.
      */
     @Override
     public Iterator<T> iterator() {
-        ArrayList<T> temp = new ArrayList<>(listRecords);
-        return temp.iterator();
+        ArrayList<T> records = records();
+        readers++;
+        Iterator<T> iter = records.iterator();
+        return new Iterator<T>() {
+            boolean done = false;
+
+            @Override
+            public boolean hasNext() {
+                boolean next = iter.hasNext();
+                if (!next && !done) {
+                    done = true;
+                    // Finished loops stop holding the list, so changes made
+                    // between loops don't copy it
+                    release(records);
+                }
+                return next;
+            }
+
+            @Override
+            public T next() {
+                return iter.next();
+            }
+        };
+    }
+
+    /**
+     * Lets go of a hold on the record list taken by an iterator or
+     * spliterator.
+     *
+     * @param records The list that was held.
+     */
+    void release(ArrayList<T> records) {
+        if (listRecords == records && readers > 0) {
+            readers--;
+        }
+    }
+
+    /**
+     * @return A spliterator over the records in the GRUP, in the order they
+     * were added.  Like iterator(), it is not affected by later changes, and
+     * it reads the GRUP's own list rather than a copy.
+     */
+    @Override
+    public Range spliterator() {
+        ArrayList<T> records = records();
+        readers++;
+        return new Range(new Hold(records), 0, records.size());
+    }
+
+    /**
+     * @return A sequential stream of the records in the GRUP.  Closing the
+     * stream, or reading it to the end, lets go of the record list.
+     */
+    public Stream<T> stream() {
+        Range range = spliterator();
+        return StreamSupport.stream(range, false).onClose(range.hold::release);
+    }
+
+    /**
+     * @return A parallel stream of the records in the GRUP.  Its tasks run
+     * in the session current on the calling thread.
+     */
+    public Stream<T> parallelStream() {
+        Range range = spliterator();
+        return StreamSupport.stream(new SessionSpliterator<>(range), true).onClose(range.hold::release);
+    }
+
+    /**
+     * A hold on the record list shared by a spliterator and every part split
+     * off it.  It is let go once the last part has run out, or when the stream
+     * is closed.
+     */
+    class Hold {
+
+        final ArrayList<T> records;
+        final AtomicInteger open = new AtomicInteger(1);
+        final AtomicBoolean held = new AtomicBoolean(true);
+
+        Hold(ArrayList<T> records) {
+            this.records = records;
+        }
+
+        void finish() {
+            if (open.decrementAndGet() == 0) {
+                release();
+            }
+        }
+
+        void release() {
+            if (held.compareAndSet(true, false)) {
+                GRUP.this.release(records);
+            }
+        }
+    }
+
+    /**
+     * Spliterator over a range of the record list, which splits by halving the
+     * range.
+     */
+    class Range implements Spliterator<T> {
+
+        final Hold hold;
+        int index;
+        final int end;
+        boolean done = false;
+
+        Range(Hold hold, int index, int end) {
+            this.hold = hold;
+            this.index = index;
+            this.end = end;
+        }
+
+        void finish() {
+            if (!done) {
+                done = true;
+                hold.finish();
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (index < end) {
+                action.accept(hold.records.get(index++));
+                return true;
+            }
+            finish();
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            ArrayList<T> records = hold.records;
+            for (; index < end; index++) {
+                action.accept(records.get(index));
+            }
+            finish();
+        }
+
+        @Override
+        public Range trySplit() {
+            int mid = (index + end) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            hold.open.incrementAndGet();
+            Range prefix = new Range(hold, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | SIZED | SUBSIZED;
+        }
     }
 
     @Override
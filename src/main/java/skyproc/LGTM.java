@@ -36,7 +36,7 @@ public class LGTM extends MajorRecord {
                 in.extractInt(1));
     }
 
-    static void writeColor(LOutFile out, Color c) throws IOException {
+    static void writeColor(ModExporter out, Color c) throws IOException {
         out.write(c.getRed(), 1);
         out.write(c.getGreen(), 1);
         out.write(c.getBlue(), 1);
@@ -9,7 +9,6 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Objects;
 import java.util.zip.DataFormatException;
 
@@ -21,7 +20,8 @@ import java.util.zip.DataFormatException;
  */
 public abstract class MajorRecord extends Record implements Serializable {
 
-    static final HashMap<FormID, ArrayList<MajorRecord>> recordHistory = new HashMap<>();
+    // Set on import worker threads so history is added in load order rather than parse order.
+    static final ThreadLocal<ArrayList<MajorRecord>> historyBuffer = new ThreadLocal<>();
 
     static final SubPrototype majorProto = new SubPrototype() {
 
@@ -112,17 +112,27 @@ public abstract class MajorRecord extends Record implements Serializable {
     }
 
     MajorRecord copyOf(Mod modToOriginateFrom, String edid) {
+        MajorRecord out = duplicate(modToOriginateFrom);
+        out.ID = new FormID();
+        out.setEDID(edid);
+        modToOriginateFrom.addRecord(out);
+        return out;
+    }
+
+    /**
+     * @param mod Mod the copy is to belong to.
+     * @return A copy with the same FormID, not yet added to the mod.
+     * Subrecords are copied as they are first accessed.
+     */
+    MajorRecord duplicate(Mod mod) {
         MajorRecord out = (MajorRecord) this.getNew();
         out.formVersion = this.formVersion;
         out.version = Arrays.copyOf(this.version, this.version.length);
-        out.srcMod = modToOriginateFrom;
-        out.ID = new FormID();
+        out.srcMod = mod;
+        out.ID = ID == null ? new FormID() : new FormID(ID);
         out.majorFlags = new LFlags(majorFlags);
         System.arraycopy(revision, 0, out.revision, 0, revision.length);
-        System.arraycopy(version, 0, out.version, 0, version.length);
-        out.subRecords = new SubRecordsCopied(subRecords);
-        out.setEDID(edid);
-        modToOriginateFrom.addRecord(out);
+        out.subRecords = new SubRecordsCopied(subRecords, srcMod);
         return out;
     }
 
@@ -157,8 +167,10 @@ public abstract class MajorRecord extends Record implements Serializable {
 
         if (get(MajorFlags.Compressed)) {
             set(MajorFlags.Compressed, false);
-            in = in.correctForCompression();
-            logMod(srcMod, getTypes().toString(), "Decompressed");
+            in = RecordCompression.inflate(in);
+            if (loggingMod()) {
+                logMod(srcMod, getTypes().toString(), "Decompressed");
+            }
         }
 
         if (!in.isDone() && "EDID".equals(getNextType(in))) {
@@ -168,8 +180,17 @@ public abstract class MajorRecord extends Record implements Serializable {
 
         importSubRecords(in);
 
-        ArrayList<MajorRecord> versions = recordHistory.computeIfAbsent(ID, k -> new ArrayList<>());
-        versions.add(this);
+        ArrayList<MajorRecord> buffer = historyBuffer.get();
+        if (buffer != null) {
+            buffer.add(this);
+        } else {
+            addToHistory(this);
+        }
+    }
+
+    static void addToHistory(MajorRecord m) {
+        ArrayList<MajorRecord> versions = SPSession.current().recordHistory.computeIfAbsent(m.ID, k -> new ArrayList<>());
+        versions.add(m);
     }
 
     void importSubRecords(LImport in) throws BadRecord, DataFormatException, BadParameter {
@@ -208,6 +229,24 @@ public abstract class MajorRecord extends Record implements Serializable {
         }
     }
 
+    @Override
+    int getContentLength(ModExporter out) {
+        if (this.get(MajorFlags.Deleted) && !SPGlobal.forceValidateMode) {
+            return 0;
+        } else {
+            return subRecords.length(out);
+        }
+    }
+
+    @Override
+    int getTotalLength(ModExporter out) {
+        int len = super.getTotalLength(out);
+        if (shouldExportGRUP()) {
+            len += getGRUPAppend().getTotalLength(out);
+        }
+        return len;
+    }
+
     @Override
     int getTotalLength(boolean isStringTabled) {
         int len = super.getTotalLength(isStringTabled);
@@ -350,7 +389,7 @@ public abstract class MajorRecord extends Record implements Serializable {
      * @return A copy of a list of this Major Record as it appears in all imported plugins.
      */
     public ArrayList<MajorRecord> getRecordHistory() {
-        return new ArrayList<>(recordHistory.get(ID));
+        return new ArrayList<>(SPSession.current().recordHistory.get(ID));
     }
 
     SubString getEDIDraw() {
@@ -0,0 +1,123 @@
+package skyproc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A RecordFileChannel that maps the plugin into memory instead of issuing a
+ * positioned read for every extract. Plugins larger than a single mapping are
+ * mapped in chunks.
+ *
+ * @author Justin Swanson
+ */
+class MappedRecordFileChannel extends RecordFileChannel {
+
+    static final int chunkSize = 1 << 30;
+    // No initializers, as openFile() is called from the super constructor
+    MappedByteBuffer[] chunks;
+    long size;
+
+    public MappedRecordFileChannel(String str) {
+        super(str);
+    }
+
+    @Override
+    public void openFile(String path) {
+        super.openFile(path);
+        try {
+            size = iChannel.size();
+            chunks = new MappedByteBuffer[(int) ((size + chunkSize - 1) / chunkSize)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i * chunkSize;
+                chunks[i] = iChannel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+            }
+        } catch (IOException ex) {
+            SPGlobal.logException(ex);
+        }
+    }
+
+    /**
+     * Copies bytes starting at the given file position, crossing chunk
+     * boundaries if needed. Does not move the position.
+     */
+    void copy(long position, byte[] dest, int offset, int length) {
+        while (length > 0) {
+            ByteBuffer chunk = chunks[(int) (position / chunkSize)].duplicate();
+            chunk.position((int) (position % chunkSize));
+            int amount = Math.min(length, chunk.remaining());
+            chunk.get(dest, offset, amount);
+            position += amount;
+            offset += amount;
+            length -= amount;
+        }
+    }
+
+    /**
+     * @param length Number of bytes to view.
+     * @return A view of the mapped file starting at the current position. Only
+     * copies if the region straddles two chunks. Does not move the position.
+     */
+    ByteBuffer view(int length) {
+        int offset = (int) (pos % chunkSize);
+        MappedByteBuffer chunk = chunks[(int) (pos / chunkSize)];
+        if (offset + length <= chunk.capacity()) {
+            ByteBuffer out = chunk.duplicate();
+            out.position(offset);
+            out.limit(offset + length);
+            return out.slice();
+        }
+        byte[] out = new byte[length];
+        copy(pos, out, 0, length);
+        return ByteBuffer.wrap(out);
+    }
+
+    @Override
+    public byte[] extract(int amount) {
+        byte[] out = new byte[amount];
+        copy(pos, out, 0, amount);
+        pos += amount;
+        return out;
+    }
+
+    @Override
+    public byte[] getBytes(int skip, int amount) {
+        byte[] out = new byte[amount];
+        copy(pos + skip, out, 0, amount);
+        return out;
+    }
+
+    @Override
+    public ByteBuffer extractByteBuffer(int skip, int read) {
+        pos += skip;
+        ByteBuffer out = view(read);
+        pos += read;
+        return out;
+    }
+
+    @Override
+    public int read() {
+        if (pos >= size) {
+            return -1;
+        }
+        int out = chunks[(int) (pos / chunkSize)].get((int) (pos % chunkSize)) & 0xFF;
+        pos++;
+        return out;
+    }
+
+    @Override
+    public void skip(int offset) {
+        pos += offset;
+    }
+
+    @Override
+    public void pos(long pos) {
+        this.pos = pos;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(end - pos, Integer.MAX_VALUE);
+    }
+}
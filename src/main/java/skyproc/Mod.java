@@ -8,12 +8,12 @@ import skyproc.exceptions.BadParameter;
 import skyproc.exceptions.BadRecord;
 import skyproc.gui.SPProgressBarPlug;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.*;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.zip.DataFormatException;
 
 import static skyproc.SPImporter.extractHeaderInfo;
@@ -32,12 +32,16 @@ public class Mod implements Comparable, Iterable<GRUP> {
     final Map<GRUP_TYPE, GRUP> GRUPs = new EnumMap<>(GRUP_TYPE.class);
     LInChannel input;
     Language language = Language.English;
-    final Map<ModListing, Integer> masterMap = new HashMap<>();
-    final Map<SubStringPointer.Files, Map<Integer, Integer>> stringLocations = new EnumMap<>(SubStringPointer.Files.class);
-    final Map<SubStringPointer.Files, LImport> stringStreams = new EnumMap<>(SubStringPointer.Files.class);
-    private final ArrayList<String> outStrings = new ArrayList<>();
-    private final ArrayList<String> outDLStrings = new ArrayList<>();
-    private final ArrayList<String> outILStrings = new ArrayList<>();
+    // Filled during export, which can be on several threads
+    final Map<ModListing, Integer> masterMap = new ConcurrentHashMap<>();
+    final Map<SubStringPointer.Files, StringTable> stringTables = new EnumMap<>(SubStringPointer.Files.class);
+    private final StringTableBuilder outStrings = new StringTableBuilder(SubStringPointer.Files.STRINGS);
+    private final StringTableBuilder outDLStrings = new StringTableBuilder(SubStringPointer.Files.DLSTRINGS);
+    private final StringTableBuilder outILStrings = new StringTableBuilder(SubStringPointer.Files.ILSTRINGS);
+    // Records parsed on an import worker, held until the mod is added in load order.
+    ArrayList<MajorRecord> pendingHistory;
+    // Set while the mod is in SPDatabase, so GRUP changes update its index
+    boolean inDatabase = false;
 
     /**
      * Creates an empty Mod with the name and master flag set to match info.
@@ -95,20 +99,21 @@ public class Mod implements Comparable, Iterable<GRUP> {
     }
 
     void addGRUP(MajorRecord r) {
-        GRUPs.put(GRUP_TYPE.valueOf(r.getType()), new GRUP(r));
+        GRUP g = new GRUP(r);
+        g.mod = this;
+        GRUPs.put(GRUP_TYPE.valueOf(r.getType()), g);
     }
 
     void addGRUPrecursive(MajorRecord r) {
-        GRUPs.put(GRUP_TYPE.valueOf(r.getType()), new GRUPRecursive(r));
+        GRUP g = new GRUPRecursive(r);
+        g.mod = this;
+        GRUPs.put(GRUP_TYPE.valueOf(r.getType()), g);
     }
 
     final void init(ModListing info) {
         this.modInfo = info;
         this.setFlag(Mod_Flags.MASTER, info.getMasterTag());
         this.setFlag(Mod_Flags.STRING_TABLED, false);
-        stringLocations.put(SubStringPointer.Files.STRINGS, new TreeMap<>());
-        stringLocations.put(SubStringPointer.Files.DLSTRINGS, new TreeMap<>());
-        stringLocations.put(SubStringPointer.Files.ILSTRINGS, new TreeMap<>());
         addGRUP(new GMST());
         addGRUP(new KYWD());
         addGRUP(new TXST());
@@ -193,12 +198,14 @@ public class Mod implements Comparable, Iterable<GRUP> {
         return f.exists();
     }
 
-    FormID getNextID() {
-        return new FormID(tes.getHEDR().nextID++, getInfo());
-    }
-
-    void resetNextIDcounter() {
-        tes.getHEDR().nextID = Mod.HEDR.firstAvailableID;
+    /**
+     * Keeps the header's next ID past an ID handed out by someone else.
+     */
+    void claimID(int id) {
+        HEDR hedr = tes.getHEDR();
+        if (id >= hedr.nextID) {
+            hedr.nextID = id + 1;
+        }
     }
 
     void addMaster(ModListing input) {
@@ -208,11 +215,38 @@ public class Mod implements Comparable, Iterable<GRUP> {
         }
     }
 
+    /**
+     * Copies the mod for another session to use in its place. Records are
+     * copied with MajorRecord.duplicate(), so their subrecords are only
+     * copied once something touches them, and nothing done to the copy
+     * reaches this mod.
+     *
+     * @return A copy of the mod, not added to any session.
+     */
+    Mod duplicate() {
+        Mod out = new Mod(modInfo, true);
+        out.tes.copyFrom(tes, this);
+        out.language = language;
+        out.stringTables.putAll(stringTables);
+        for (Map.Entry<GRUP_TYPE, GRUP> e : GRUPs.entrySet()) {
+            duplicate(e.getValue(), out.GRUPs.get(e.getKey()), out);
+        }
+        return out;
+    }
+
+    static void duplicate(GRUP<MajorRecord> from, GRUP<MajorRecord> to, Mod mod) {
+        for (MajorRecord r : from.records()) {
+            MajorRecord dup = r.duplicate(mod);
+            if (r.shouldExportGRUP()) {
+                duplicate(r.getGRUPAppend(), dup.getGRUPAppend(), mod);
+            }
+            to.addRecord(dup);
+        }
+    }
+
     void closeStreams() {
         input.close();
-        for (LImport c : stringStreams.values()) {
-            c.close();
-        }
+        stringTables.clear();
     }
 
     /**
@@ -378,69 +412,19 @@ public class Mod implements Comparable, Iterable<GRUP> {
     }
 
     public ArrayList<FormID> allFormIDs() {
-        ArrayList<FormID> tmp = new ArrayList<>();
-        for (GRUP g : GRUPs.values()) {
-            tmp.addAll(g.allFormIDs());
-        }
-        ArrayList<FormID> out = new ArrayList<>(tmp.size());
-        for (FormID id : tmp) {
-            if (id != null) {
-                out.add(id);
-            } else {
-                SPGlobal.logError(this.toString(), "AllFormIDs return null formid reference.");
-            }
-        }
-        return out;
-    }
-
-    void openStringStreams() {
-        if (this.isFlag(Mod_Flags.STRING_TABLED)) {
-            for (Files f : SubStringPointer.Files.values()) {
-                addStream(stringStreams, f);
-            }
-        }
-    }
-
-    void addStream(Map<SubStringPointer.Files, LImport> streams, SubStringPointer.Files file) {
-        String stringPath = SPImporter.getStringFilePath(this, language, file);
-        File stringFile = new File(SPGlobal.pathToDataFixed + stringPath);
-        if (stringFile.isFile()) {
-            streams.put(file, new LInChannel(stringFile));
-            return;
-        } else if (BSA.hasBSA(getInfo())) {
-            BSA bsa = BSA.getBSA(getInfo());
-            if (bsa.hasFile(stringPath)) {
-                LByteChannel stream = new LByteChannel();
-                stream.openStream(bsa.getFile(stringPath));
-                streams.put(file, stream);
-            }
-            return;
-        } else {
-            //check for plugin loaded BSA has strings file
-            for (BSA theBSA : BSA.getPluginBSAs()) {
-                theBSA.loadFolders();
-                if (!theBSA.hasFile(stringPath)) {
-                    continue;
-                }
-                LByteChannel stream = new LByteChannel();
-                stream.openStream(theBSA.getFile(stringPath));
-                streams.put(file, stream);
-                return;
-            }
-            // check for resource loaded BSA with strings file
-            for (BSA theBSA : BSA.getResourceBSAa()) {
-                theBSA.loadFolders();
-                if (!theBSA.hasFile(stringPath)) {
-                    continue;
+        ArrayList<FormID> out = new ArrayList<>(numRecords());
+        for (GRUP<?> g : GRUPs.values()) {
+            for (MajorRecord m : g) {
+                for (FormID id : m.allFormIDs()) {
+                    if (id != null) {
+                        out.add(id);
+                    } else {
+                        SPGlobal.logError(this.toString(), "AllFormIDs return null formid reference.");
+                    }
                 }
-                LByteChannel stream = new LByteChannel();
-                stream.openStream(theBSA.getFile(stringPath));
-                streams.put(file, stream);
-                return;
             }
         }
-
-        SPGlobal.logMod(this, getName(), "No strings file for " + file);
+        return out;
     }
 
     /**
@@ -530,9 +514,7 @@ public class Mod implements Comparable, Iterable<GRUP> {
      *                   Leave this empty if you want all GRUPs merged.
      */
     public void addAsOverrides(ArrayList<Mod> in, GRUP_TYPE... grup_types) {
-        for (Mod m : in) {
-            addAsOverrides(m, grup_types);
-        }
+        addAsOverrides((Collection<Mod>) in, grup_types);
     }
 
     /**
@@ -548,8 +530,23 @@ public class Mod implements Comparable, Iterable<GRUP> {
      *                   Leave this empty if you want all GRUPs merged.
      */
     public void addAsOverrides(Collection<Mod> in, GRUP_TYPE... grup_types) {
-        for (Mod m : in) {
-            addAsOverrides(m, grup_types);
+        if (grup_types.length == 0) {
+            grup_types = GRUPs.keySet().toArray(new GRUP_TYPE[0]);
+        }
+        // Fold each GRUP type across every mod at once, rather than mod by mod
+        ArrayList<GRUP> rhs = new ArrayList<>(in.size());
+        for (GRUP_TYPE t : grup_types) {
+            GRUP g = GRUPs.get(t);
+            if (g == null) {
+                continue;
+            }
+            rhs.clear();
+            for (Mod m : in) {
+                if (!this.equals(m)) {
+                    rhs.add(m.GRUPs.get(t));
+                }
+            }
+            g.merge(rhs);
         }
     }
 
@@ -565,7 +562,7 @@ public class Mod implements Comparable, Iterable<GRUP> {
      *                   Leave this empty if you want all GRUPs merged.
      */
     public void addAsOverrides(SPDatabase db, GRUP_TYPE... grup_types) {
-        addAsOverrides(SPDatabase.modLookup.values(), grup_types);
+        addAsOverrides(SPDatabase.modLookup().values(), grup_types);
     }
 
     /**
@@ -585,9 +582,9 @@ public class Mod implements Comparable, Iterable<GRUP> {
      * @return All Major Records from the mod.
      */
     public ArrayList<MajorRecord> getRecords() {
-        ArrayList<MajorRecord> out = new ArrayList<>();
+        ArrayList<MajorRecord> out = new ArrayList<>(numRecords());
         for (GRUP g : GRUPs.values()) {
-            out.addAll(g.getRecords());
+            out.addAll(g.records());
         }
         return out;
     }
@@ -606,6 +603,9 @@ public class Mod implements Comparable, Iterable<GRUP> {
     }
 
     int getMasterIndex(ModListing in) {
+        if (in == null) {
+            return getMasters().size();
+        }
         Integer out = masterMap.get(in);
         if (out != null) {
             return out;
@@ -614,7 +614,7 @@ public class Mod implements Comparable, Iterable<GRUP> {
             int i;
             for (i = 0; i < masters.size(); i++) {
                 if (masters.get(i).equals(in)) {
-                    return i;
+                    break;
                 }
             }
             masterMap.put(in, i);
@@ -665,8 +665,6 @@ public class Mod implements Comparable, Iterable<GRUP> {
     void export(File outPath) throws IOException, BadRecord {
         SPGlobal.logMain("Mod Export", "Exporting " + this);
 
-        ModExporter out = new ModExporter(outPath, this);
-
         // check leveled lists don't have more than 255 entries
         // and reduces and split as needed
         GRUP<LVLI> lvli = GRUPs.get(GRUP_TYPE.LVLI);
@@ -683,49 +681,72 @@ public class Mod implements Comparable, Iterable<GRUP> {
             }
         }
         SPProgressBarPlug.reset();
-        SPProgressBarPlug.setMax(exportGRUPs.size() + 6, "Exporting " + this);
-        ArrayList<FormID> allForms = allFormIDs();
-
-        // Add all mods that contained any of the FormIDs used.
-        SPProgressBarPlug.setStatusNumbered("Adding Masters From Records");
-        if (SPGlobal.getAllModsAsMasters()) {
-            ArrayList<ModListing> addedMods = SPImporter.getActiveModList();
-            for (ModListing m : addedMods) {
+        SPProgressBarPlug.setMax(exportGRUPs.size() + 5, "Exporting " + this);
+
+        // One pass over the records to add masters and check for duplicates
+        SPProgressBarPlug.setStatusNumbered("Adding Masters and Checking for Duplicates");
+        boolean allMods = SPGlobal.getAllModsAsMasters();
+        if (allMods) {
+            for (ModListing m : SPImporter.getActiveModList()) {
                 addMaster(m);
             }
-        } else {
-            Set<ModListing> addedMods = new HashSet<>();
-            for (FormID ID : allForms) {
-                if (!ID.isNull()) {
-                    ModListing master = ID.getMaster();
-                    if (!addedMods.contains(master)) {
-                        addMaster(master);
-                        addedMods.add(master);
+        }
+        Set<ModListing> addedMods = new HashSet<>();
+        Set<ModListing> importedMods = new HashSet<>(SPDatabase.getImportedModListings());
+        Map<String, MajorRecord> edids = new HashMap<>();
+        FormIDMap<MajorRecord> IDs = new FormIDMap<>(numRecords());
+        boolean bad = false;
+        for (GRUP g : GRUPs.values()) {
+            for (Object o : g.records()) {
+                MajorRecord m = (MajorRecord) o;
+                if (!allMods) {
+                    // Add all mods that contained any of the FormIDs used.
+                    for (FormID ID : m.allFormIDs()) {
+                        if (ID == null) {
+                            SPGlobal.logError(this.toString(), "AllFormIDs return null formid reference.");
+                        } else if (!ID.isNull() && addedMods.add(ID.getMaster())) {
+                            addMaster(ID.getMaster());
+                        }
                     }
-                }
-            }
-            SPProgressBarPlug.incrementBar();
 
-            // Go through each record, and add all mods that reference that record
-            // Just to symbolize that they "had part" in the patch
-            // And help encourage repatching when mods are removed.
-            SPProgressBarPlug.setStatusNumbered("Adding Masters From Contributors");
-            if (!SPGlobal.mergeMode) {
-                for (GRUP<MajorRecord> g : this) {
-                    for (MajorRecord major : g) {
-                        FormID id = major.getForm();
-                        for (Mod mod : SPDatabase.getImportedMods()) {
-                            if (mod.contains(id) && !addedMods.contains(mod.getInfo())
-                                    && !mod.equals(SPGlobal.getGlobalPatch())) {
-                                addMaster(mod.getInfo());
-                                addedMods.add(mod.getInfo());
+                    // Add all mods that have a version of the record
+                    // Just to symbolize that they "had part" in the patch
+                    // And help encourage repatching when mods are removed.
+                    if (!SPGlobal.mergeMode) {
+                        ArrayList<SPDatabase.IndexEntry> chain = SPDatabase.formIndex().get(m.getForm());
+                        if (chain != null) {
+                            for (SPDatabase.IndexEntry e : chain) {
+                                ModListing contributor = e.mod.getInfo();
+                                if (importedMods.contains(contributor) && !e.mod.equals(SPGlobal.getGlobalPatch())
+                                        && addedMods.add(contributor)) {
+                                    addMaster(contributor);
+                                }
                             }
                         }
                     }
                 }
+
+                // Check if any duplicate EDIDS or FormIDS
+                MajorRecord other = edids.get(m.getEDID());
+                if (other != null
+                        && (m.getFormMaster().equals(SPGlobal.getGlobalPatch().modInfo)
+                        || other.getFormMaster().equals(SPGlobal.getGlobalPatch().modInfo))) {
+                    SPGlobal.logError("EDID Check", "Error! Duplicate EDID " + m);
+                    SPGlobal.logError("EDID Check", "    With: " + other);
+                    bad = true;
+                } else {
+                    edids.put(m.getEDID(), m);
+                }
+                if (IDs.put(m.getForm(), m) != null) {
+                    SPGlobal.logError("FormID Check", "Error! Duplicate FormID " + m);
+                    bad = true;
+                }
             }
         }
         SPProgressBarPlug.incrementBar();
+        if (bad) {
+            throw new BadRecord("Duplicate EDIDs or FormIDs.  Check logs for a listing.");
+        }
 
         // Sort masters to match load order
         sortMasters();
@@ -742,55 +763,57 @@ public class Mod implements Comparable, Iterable<GRUP> {
             }
         }
 
+        ModExporter out = new ModExporter(outPath, this);
         tes.export(out);
-
-        // Export GRUPs
-        for (GRUP g : exportGRUPs) {
-            SPProgressBarPlug.setStatusNumbered("Exporting " + this + ": " + g.getContainedType());
-            g.export(out);
-            SPProgressBarPlug.incrementBar();
-        }
-
-        // Export or clean up STRINGS files
-        if (this.isFlag(Mod_Flags.STRING_TABLED)) {
-            SPProgressBarPlug.setStatusNumbered("Exporting " + this + ": STRINGS files");
-            exportStringsFile(outStrings, SubStringPointer.Files.STRINGS);
-            exportStringsFile(outDLStrings, SubStringPointer.Files.DLSTRINGS);
-            exportStringsFile(outILStrings, SubStringPointer.Files.ILSTRINGS);
-            SPProgressBarPlug.incrementBar();
-        } else {
-            deleteStringsFiles();
-        }
         out.close();
 
-        // Check if any duplicate EDIDS or FormIDS
-        SPProgressBarPlug.setStatusNumbered("Checking for Duplicates");
-        Map<String, MajorRecord> edids = new HashMap<>();
-        Set<FormID> IDs = new HashSet<>();
-        boolean bad = false;
-        for (GRUP g : GRUPs.values()) {
-            for (Object o : g.listRecords) {
-                MajorRecord m = (MajorRecord) o;
-                if (edids.containsKey(m.getEDID())
-                        && (m.getFormMaster().equals(SPGlobal.getGlobalPatch().modInfo)
-                        || edids.get(m.getEDID()).getFormMaster().equals(SPGlobal.getGlobalPatch().modInfo))) {
-                    SPGlobal.logError("EDID Check", "Error! Duplicate EDID " + m);
-                    SPGlobal.logError("EDID Check", "    With: " + edids.get(m.getEDID()));
-                    bad = true;
+        // Export GRUPs.  Each is written into memory and checked against the
+        // length its header claims, then appended in order.
+        boolean stringTabled = this.isFlag(Mod_Flags.STRING_TABLED);
+        // String IDs are handed out in export order, so string tabled mods stay on one thread
+        ExecutorService pool = SPGlobal.exportThreads > 1 && !stringTabled
+                ? Executors.newFixedThreadPool(SPGlobal.exportThreads) : null;
+        // Only a few GRUPs are exported ahead, so only those are held in memory
+        int ahead = SPGlobal.exportThreads * 2;
+        ArrayDeque<Future<byte[]>> exporting = new ArrayDeque<>(ahead);
+        int submitted = 0;
+        boolean lengthsOff = false;
+        try (FileOutputStream append = new FileOutputStream(outPath, true)) {
+            for (GRUP g : exportGRUPs) {
+                SPProgressBarPlug.setStatusNumbered("Exporting " + this + ": " + g.getContainedType());
+                byte[] grup;
+                if (pool == null) {
+                    grup = exportGRUP(g);
                 } else {
-                    edids.put(m.getEDID(), m);
+                    while (submitted < exportGRUPs.size() && exporting.size() < ahead) {
+                        GRUP next = exportGRUPs.get(submitted++);
+                        exporting.add(pool.submit(SPSession.inCurrent(() -> exportGRUP(next))));
+                    }
+                    try {
+                        grup = exporting.poll().get();
+                    } catch (InterruptedException | ExecutionException ex) {
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        if (cause instanceof IOException) {
+                            throw (IOException) cause;
+                        }
+                        throw new IOException(cause);
+                    }
                 }
-                if (IDs.contains(m.getForm())) {
-                    SPGlobal.logError("FormID Check", "Error! Duplicate FormID " + m);
-                    bad = true;
+                if (grup == null) {
+                    lengthsOff = true;
                 } else {
-                    IDs.add(m.getForm());
+                    append.write(grup);
                 }
+                SPProgressBarPlug.incrementBar();
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
             }
         }
-        SPProgressBarPlug.incrementBar();
-        if (bad) {
-            throw new BadRecord("Duplicate EDIDs or FormIDs.  Check logs for a listing.");
+        if (lengthsOff) {
+            SPGlobal.logError("Record Length Check", "Record lengths were off.");
+            throw new BadRecord("Record lengths are off.");
         }
 
         SPProgressBarPlug.setStatusNumbered("Validating Record Lengths");
@@ -801,6 +824,17 @@ public class Mod implements Comparable, Iterable<GRUP> {
         }
         SPProgressBarPlug.incrementBar();
 
+        // Export or clean up STRINGS files
+        if (stringTabled) {
+            SPProgressBarPlug.setStatusNumbered("Exporting " + this + ": STRINGS files");
+            exportStringsFile(outStrings);
+            exportStringsFile(outDLStrings);
+            exportStringsFile(outILStrings);
+            SPProgressBarPlug.incrementBar();
+        } else {
+            deleteStringsFiles();
+        }
+
         SPProgressBarPlug.setStatusNumbered("Exporting Consistency File");
         if (Consistency.automaticExport) {
             Consistency.export();
@@ -808,6 +842,29 @@ public class Mod implements Comparable, Iterable<GRUP> {
         SPProgressBarPlug.incrementBar();
     }
 
+    /**
+     * Exports one GRUP into memory.
+     *
+     * @return The GRUP, or null if the bytes written did not match the length
+     * the GRUP reported.
+     */
+    byte[] exportGRUP(GRUP g) throws IOException {
+        ModExporter out = new ModExporter(this);
+        // Lengths have to be taken before export, which can clear subrecords.
+        // They are cached in the exporter, so the export itself reuses them.
+        int expected = g.getTotalLength(out);
+        g.export(out);
+        byte[] grup = out.toByteArray();
+        if (grup.length != expected) {
+            SPGlobal.logError("Record Length Check", g + " is wrong.  Expected " + expected + " bytes, wrote " + grup.length);
+            return null;
+        }
+        if (SPGlobal.compressThreshold > 0) {
+            grup = RecordCompression.compressGRUP(grup, SPGlobal.compressThreshold);
+        }
+        return grup;
+    }
+
     /**
      * Exports the master list of this mod to "Files/Last Masterlist.txt"<br>
      * Used for checking if patches are needed.
@@ -834,21 +891,14 @@ public class Mod implements Comparable, Iterable<GRUP> {
     int addOutString(String in, SubStringPointer.Files file) {
         switch (file) {
             case DLSTRINGS:
-                return addOutString(in, outDLStrings);
+                return outDLStrings.add(in);
             case ILSTRINGS:
-                return addOutString(in, outILStrings);
+                return outILStrings.add(in);
             default:
-                return addOutString(in, outStrings);
+                return outStrings.add(in);
         }
     }
 
-    int addOutString(String in, ArrayList<String> list) {
-        if (!list.contains(in)) {
-            list.add(in);
-        }
-        return list.indexOf(in) + 1;  // To prevent indexing starting at 0
-    }
-
     String genStringsPath(SubStringPointer.Files file) {
         return SPGlobal.pathToDataFixed + "Strings/" + getNameNoSuffix() + "_" + SPGlobal.language + "." + file;
     }
@@ -868,39 +918,16 @@ public class Mod implements Comparable, Iterable<GRUP> {
             }
         }
         sublist.sort();
+        masterMap.clear();
     }
 
-    void exportStringsFile(ArrayList<String> list, SubStringPointer.Files file) throws IOException {
-        int stringLength = 0;
-        for (String s : list) {
-            stringLength += s.length() + 1;
-
-        }
-        int outLength = stringLength + 8 * list.size() + 8;
-        LOutFile out = new LOutFile(genStringsPath(file));
-
-        out.write(list.size());
-        out.write(stringLength);
-
-        int i = 1;  // To prevent indexing starting at 0
-        int offset = 0;
-        for (String s : list) {
-            out.write(i++);
-            out.write(offset);
-            offset += s.length() + 1;
-        }
-
-        for (String s : list) {
-            out.write(s);
-            out.write(0, 1);  // Null terminator
-        }
-
-        list.clear();
-        out.close();
+    void exportStringsFile(StringTableBuilder strings) throws IOException {
+        strings.write(new File(genStringsPath(strings.file)));
+        strings.clear();
     }
 
     void validateListEntries(GRUP g) {
-        ArrayList<MajorRecord> records = new ArrayList<>(g.getRecords());
+        ArrayList<MajorRecord> records = new ArrayList<>(g.records());
         for (MajorRecord record : records) {
             LeveledRecord leveledRec = (LeveledRecord) record;
             if (leveledRec != null) {
@@ -951,6 +978,15 @@ public class Mod implements Comparable, Iterable<GRUP> {
         GRUPs.get(GRUP_TYPE.valueOf(type)).parseData(data, this);
     }
 
+    void commitHistory() {
+        if (pendingHistory != null) {
+            for (MajorRecord m : pendingHistory) {
+                MajorRecord.addToHistory(m);
+            }
+            pendingHistory = null;
+        }
+    }
+
     /**
      * Returns whether the given flag is on or off. <br> <br> An example use of
      * this function is as follows: <br> boolean isaMasterMod =
@@ -1377,6 +1413,25 @@ public class Mod implements Comparable, Iterable<GRUP> {
         return hash;
     }
 
+    /**
+     * @return A sequential stream over all Major Records in the mod, GRUP by
+     * GRUP.  Unlike getRecords(), nothing is copied.  Closing the stream, or
+     * reading it to the end, lets go of the GRUPs' record lists.
+     */
+    public Stream<MajorRecord> stream() {
+        RecordSpliterator records = RecordSpliterator.of(GRUPs.values());
+        return StreamSupport.stream(records, false).onClose(records::close);
+    }
+
+    /**
+     * @return A parallel stream over all Major Records in the mod.  Its tasks
+     * run in the session current on the calling thread.
+     */
+    public Stream<MajorRecord> parallelStream() {
+        RecordSpliterator records = RecordSpliterator.of(GRUPs.values());
+        return StreamSupport.stream(new SessionSpliterator<>(records), true).onClose(records::close);
+    }
+
     /**
      * @return An iterator over all the GRUPs in the mod.
      */
@@ -1480,6 +1535,16 @@ public class Mod implements Comparable, Iterable<GRUP> {
             subRecords.export(out);
         }
 
+        void copyFrom(TES4 in, Mod srcMod) {
+            flags.set(in.flags.export());
+            fluff1 = in.fluff1;
+            fluff2 = in.fluff2;
+            fluff3 = in.fluff3;
+            for (SubRecord s : in.subRecords) {
+                subRecords.add(RecordCopier.copy(s, TES4proto, srcMod));
+            }
+        }
+
         void addMaster(ModListing mod) {
             subRecords.getSubList("MAST").add(mod);
         }
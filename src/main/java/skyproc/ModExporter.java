@@ -1,22 +1,181 @@
 package skyproc;
 
 import lev.LOutFile;
+import lev.Ln;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * Writes records out in plugin form, either to a file or, when copying
+ * records, to a buffer in memory.
+ *
  * @author Justin Swanson
  */
-class ModExporter extends LOutFile {
+class ModExporter {
 
+    private final LOutFile file;
+    private final ByteArrayOutputStream buffer;
     private final Mod exportMod;
+    private final boolean stringTabled;
     private Mod srcMod;
     private MajorRecord srcMajor;
+    // A GRUP's header needs the length of every record in it, so each GRUP,
+    // major record and subrecord is measured once and the result reused when
+    // it's written.
+    private final Map<Record, Integer> lengths = new IdentityHashMap<>();
+    // When copying records, FormIDs are set aside here and written as their
+    // position in the list, for the copy to take over as they are
+    private final List<FormID> copies;
 
     ModExporter(File path, Mod mod) throws FileNotFoundException {
-        super(path);
+        file = new LOutFile(path);
+        buffer = null;
         exportMod = mod;
+        stringTabled = mod.isFlag(Mod.Mod_Flags.STRING_TABLED);
+        copies = null;
+    }
+
+    /**
+     * Exports into memory, to be read back with toByteArray().
+     *
+     * @param mod Mod the records are exported as part of.
+     */
+    ModExporter(Mod mod) {
+        this(mod, null);
+    }
+
+    /**
+     * Exports into memory for copying records.
+     *
+     * @param mod    Mod the records are exported as part of.
+     * @param copies List that copies of the FormIDs written are added to.
+     */
+    ModExporter(Mod mod, List<FormID> copies) {
+        file = null;
+        buffer = new ByteArrayOutputStream();
+        exportMod = mod;
+        stringTabled = mod.isFlag(Mod.Mod_Flags.STRING_TABLED);
+        this.copies = copies;
+    }
+
+    void write(byte[] in) throws IOException {
+        if (file != null) {
+            file.write(in);
+        } else {
+            buffer.write(in, 0, in.length);
+        }
+    }
+
+    /**
+     * Writes the array, followed by zeros if it is shorter than size.
+     */
+    void write(byte[] in, int size) throws IOException {
+        if (file != null) {
+            file.write(in, size);
+        } else {
+            write(in);
+            for (int i = in.length; i < size; i++) {
+                buffer.write(0);
+            }
+        }
+    }
+
+    void write(int in) throws IOException {
+        write(in, 4);
+    }
+
+    void write(int in, int size) throws IOException {
+        if (file != null) {
+            file.write(in, size);
+        } else {
+            write(Ln.toByteArray(in, size));
+        }
+    }
+
+    void write(boolean in, int size) throws IOException {
+        if (file != null) {
+            file.write(in, size);
+        } else {
+            write(in ? 1 : 0, size);
+        }
+    }
+
+    void write(float in) throws IOException {
+        if (file != null) {
+            file.write(in);
+        } else {
+            write(Float.floatToIntBits(in), 4);
+        }
+    }
+
+    void write(String in) throws IOException {
+        if (file != null) {
+            file.write(in);
+        } else {
+            write(Ln.toByteArray(in));
+        }
+    }
+
+    /**
+     * Writes the string, followed by zeros if it is shorter than size.
+     */
+    void write(String in, int size) throws IOException {
+        if (file != null) {
+            file.write(in, size);
+        } else {
+            write(Ln.toByteArray(in), size);
+        }
+    }
+
+    void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    /**
+     * @return Everything written so far, for exporters writing to memory.
+     */
+    byte[] toByteArray() {
+        return buffer.toByteArray();
+    }
+
+    boolean isCopying() {
+        return copies != null;
+    }
+
+    /**
+     * Sets aside a copy of id, resolving its master against the source mod
+     * if it doesn't have one yet.
+     *
+     * @return The position of the copy, to write in place of the FormID.
+     */
+    int copy(FormID id) {
+        FormID copy = new FormID(id);
+        if (srcMod != null && !copy.isNull()) {
+            copy.standardize(srcMod);
+        }
+        copies.add(copy);
+        return copies.size() - 1;
+    }
+
+    boolean isStringTabled() {
+        return stringTabled;
+    }
+
+    int contentLength(Record r) {
+        Integer length = lengths.get(r);
+        if (length == null) {
+            length = r.getContentLength(this);
+            lengths.put(r, length);
+        }
+        return length;
     }
 
     public Mod getExportMod() {
@@ -28,6 +28,23 @@ public class ModListing extends SubRecord<ModListing> implements Comparable<ModL
     boolean falseMaster = false;
 
     int strHash = 0;
+    // Position in the current session's plugin lists, recomputed when they change
+    transient Rank rank;
+
+    static class Rank {
+
+        final SPSession session;
+        final int version;
+        final int active;
+        final int added;
+
+        Rank(SPSession session, int version, int active, int added) {
+            this.session = session;
+            this.version = version;
+            this.active = active;
+            this.added = added;
+        }
+    }
 
     /**
      * ModListing objects are used to uniquely identify mods via name and master
@@ -66,6 +83,7 @@ public class ModListing extends SubRecord<ModListing> implements Comparable<ModL
         }
         mast.setString(in);
         strHash = 259 + this.mast.hashUpperCaseCode();
+        rank = null;
     }
 
     /**
@@ -132,6 +150,17 @@ public class ModListing extends SubRecord<ModListing> implements Comparable<ModL
 
     void setMasterTag(Boolean in) {
         master = in;
+        rank = null;
+    }
+
+    Rank rank() {
+        SPSession session = SPSession.current();
+        Rank out = rank;
+        if (out == null || out.session != session || out.version != session.rankVersion) {
+            out = session.rank(this);
+            rank = out;
+        }
+        return out;
     }
 
     /**
@@ -211,13 +240,15 @@ public class ModListing extends SubRecord<ModListing> implements Comparable<ModL
         if (rhs.equals(update)) {
             return 1;
         }
-        boolean thisActive = SPDatabase.activePlugins.contains(this);
-        boolean rhsActive = SPDatabase.activePlugins.contains(rhs);
+        Rank thisRank = rank();
+        Rank rhsRank = rhs.rank();
+        boolean thisActive = thisRank.active != -1;
+        boolean rhsActive = rhsRank.active != -1;
         if (thisActive) {
             if (!rhsActive) {
                 return -1;
             } else {
-                int comp = SPDatabase.activePlugins.indexOf(this) - SPDatabase.activePlugins.indexOf(rhs);
+                int comp = thisRank.active - rhsRank.active;
                 if (comp != 0) {
                     return comp;
                 } else {
@@ -228,7 +259,7 @@ public class ModListing extends SubRecord<ModListing> implements Comparable<ModL
             if (rhsActive) {
                 return 1;
             } else {
-                int comp = SPDatabase.addedPlugins.indexOf(this) - SPDatabase.addedPlugins.indexOf(rhs);
+                int comp = thisRank.added - rhsRank.added;
                 if (comp != 0) {
                     return comp;
                 } else {
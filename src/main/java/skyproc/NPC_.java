@@ -110,7 +110,7 @@ public class NPC_ extends MajorRecordNamed implements Serializable {
             }
             flags = flagsList.toArray(flags);
         }
-        NPC_ dup = (NPC_) Ln.deepCopy(otherNPC);
+        NPC_ dup = (NPC_) otherNPC.duplicate(otherNPC.srcMod);
         for (TemplateFlag f : flags) {
             if (templateToInternal(dup, f)) {
                 set(f, false);
@@ -2043,14 +2043,16 @@ public class NPC_ extends MajorRecordNamed implements Serializable {
             farAwayDistance = in.extractFloat();
             gearedUpWeapons = in.extractInt(1);
             fluff2 = in.extract(3);
-            logMod(srcMod, "", "DNAM record: ");
-            String temp;
-            for (Skill s : Skill.NPC_Skills()) {
-                temp = " BASE:" + getSkillBase(s) + ", MOD:" + getSkillMod(s);
-                logMod(srcMod, "", "  " + s.toString() + Ln.spaceLeft(false, 15 - s.toString().length() + temp.length(), ' ', temp));
+            if (loggingMod()) {
+                logMod(srcMod, "", "DNAM record: ");
+                String temp;
+                for (Skill s : Skill.NPC_Skills()) {
+                    temp = " BASE:" + getSkillBase(s) + ", MOD:" + getSkillMod(s);
+                    logMod(srcMod, "", "  " + s.toString() + Ln.spaceLeft(false, 15 - s.toString().length() + temp.length(), ' ', temp));
+                }
+                logMod(srcMod, "", "  " + "Health: " + health + ", Magicka: " + magicka + ", Stamina: " + stamina);
+                logMod(srcMod, "", "  " + "Far Away Distance: " + farAwayDistance + ", Geared Up weapons: " + gearedUpWeapons);
             }
-            logMod(srcMod, "", "  " + "Health: " + health + ", Magicka: " + magicka + ", Stamina: " + stamina);
-            logMod(srcMod, "", "  " + "Far Away Distance: " + farAwayDistance + ", Geared Up weapons: " + gearedUpWeapons);
         }
 
         @Override
@@ -2142,10 +2144,12 @@ public class NPC_ extends MajorRecordNamed implements Serializable {
             templateFlags.set(in.extract(2));
             healthOffset = in.extractInt(2);
             bleedout = in.extractInt(2);
-            logMod(srcMod, "", "ACBS record: ");
-            logMod(srcMod, "", "  " + "Base Spell Points: " + magickaOffset + ", Base Fatigue: " + fatigueOffset);
-            logMod(srcMod, "", "  " + "Level: " + level + ", Min Calculated Level: " + minCalcLevel + ", Max Calculated Level: " + maxCalcLevel);
-            logMod(srcMod, "", "  " + "Speed Multiplier: " + speed + ", Disposition Base: " + dispositionBase);
+            if (loggingMod()) {
+                logMod(srcMod, "", "ACBS record: ");
+                logMod(srcMod, "", "  " + "Base Spell Points: " + magickaOffset + ", Base Fatigue: " + fatigueOffset);
+                logMod(srcMod, "", "  " + "Level: " + level + ", Min Calculated Level: " + minCalcLevel + ", Max Calculated Level: " + maxCalcLevel);
+                logMod(srcMod, "", "  " + "Speed Multiplier: " + speed + ", Disposition Base: " + dispositionBase);
+            }
         }
 
         @Override
@@ -2238,10 +2242,12 @@ public class NPC_ extends MajorRecordNamed implements Serializable {
             aggroWarn = in.extractInt(4);
             aggroWarnAttack = in.extractInt(4);
             aggroAttack = in.extractInt(4);
-            logMod(srcMod, "", "AIDT record: ");
-            logMod(srcMod, "", "  Aggression: " + aggression + ", Confidence: " + confidence + ", Morality: " + morality);
-            logMod(srcMod, "", "  Assistance: " + assistance + ", Mood: " + mood + ", AggroRadiusBehavior: " + aggroRadiusBehavior);
-            logMod(srcMod, "", "  Aggro Attack: " + aggroAttack + ", Aggro Warn: " + aggroWarn + ", Aggro Warn/Attack: " + aggroWarnAttack);
+            if (loggingMod()) {
+                logMod(srcMod, "", "AIDT record: ");
+                logMod(srcMod, "", "  Aggression: " + aggression + ", Confidence: " + confidence + ", Morality: " + morality);
+                logMod(srcMod, "", "  Assistance: " + assistance + ", Mood: " + mood + ", AggroRadiusBehavior: " + aggroRadiusBehavior);
+                logMod(srcMod, "", "  Aggro Attack: " + aggroAttack + ", Aggro Warn: " + aggroWarn + ", Aggro Warn/Attack: " + aggroWarnAttack);
+            }
         }
 
         @Override
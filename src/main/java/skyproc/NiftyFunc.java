@@ -18,7 +18,6 @@ public class NiftyFunc {
 
     static final String[] validationSkip = {"DIAL"};
     static final String recordLengths = "Record Lengths";
-    static final Map<FormID, MajorRecord> deepSubrecordCopyDB = new HashMap<>();
 
     /**
      * A common way to attach scripts to NPCs that normally cannot have scripts
@@ -643,6 +642,7 @@ public class NiftyFunc {
      */
     public static ArrayList<MajorRecord> deepCopySubRecords(MajorRecord in, ModListing targetMod) {
         ArrayList<MajorRecord> out = new ArrayList<>();
+        Map<FormID, MajorRecord> copies = SPSession.current().deepSubrecordCopyDB;
         ArrayList<FormID> allIDs = in.allFormIDs();
         allIDs.remove(in.getForm());
         for (FormID id : allIDs) {
@@ -651,14 +651,14 @@ public class NiftyFunc {
                     && (id.getMaster().equals(targetMod) // From target mod
                     || !SPDatabase.getMod(id.getMaster()).contains(id) // Or missing "insert"
             )) {
-                MajorRecord copy = deepSubrecordCopyDB.get(id);
+                MajorRecord copy = copies.get(id);
                 if (copy == null) {
                     String edid = m.getEDID();
                     if (!m.getType().equals("KYWD") && !m.getType().equals("GMST")) {
                         edid += "_deepCopy";
                     }
                     copy = m.copy(edid);
-                    deepSubrecordCopyDB.put(id, copy);
+                    copies.put(id, copy);
                     deepCopySubRecords(copy, targetMod);
                 }
                 id.setTo(copy.getForm());
@@ -680,7 +680,7 @@ public class NiftyFunc {
      */
     public static MajorRecord mergeDuplicate(MajorRecord in) {
         GRUP_TYPE g = GRUP_TYPE.valueOf(in.getType());
-        ArrayList<MajorRecord> grup = new ArrayList<>(SPGlobal.getGlobalPatch().getGRUPs().get(g).getRecords());
+        ArrayList<MajorRecord> grup = new ArrayList<>(SPGlobal.getGlobalPatch().getGRUPs().get(g).records());
         grup.remove(in);
         for (MajorRecord existing : grup) {
             if (in.deepEquals(existing)) {
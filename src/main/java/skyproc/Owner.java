@@ -1,7 +1,6 @@
 package skyproc;
 
 import lev.LImport;
-import lev.Ln;
 import skyproc.exceptions.BadParameter;
 import skyproc.exceptions.BadRecord;
 
@@ -57,7 +56,7 @@ class Owner extends SubRecordTyped {
         super.parseData(in, srcMod);
         owner.parseData(in, srcMod);
         global.parseData(in, srcMod);
-        reqRank = Ln.arrayToInt(global.form);
+        reqRank = global.form;
         itemCondition = in.extractFloat();
     }
 
@@ -0,0 +1,270 @@
+package skyproc;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A summary of a plugin on disk: its size, modified date, a hash of its
+ * contents, its masters and how many records each top level GRUP holds.<br>
+ * Manifests are made from a header-only scan of the plugin and cached in
+ * "SkyProc/Plugin Manifests" in My Documents, so checking whether a plugin is
+ * relevant to a patch does not need a full import. A cached manifest is
+ * reused as long as the plugin's size and modified date haven't changed.
+ *
+ * @author Justin Swanson
+ */
+public class PluginManifest {
+
+    static final int version = 1;
+    static final String header = "Plugin Manifest";
+    static final Map<String, PluginManifest> loaded = new HashMap<>();
+    final String path;
+    final long size;
+    final long modified;
+    final long hash;
+    final ArrayList<String> masters;
+    final LinkedHashMap<String, Integer> records;
+
+    PluginManifest(String path, long size, long modified, long hash, ArrayList<String> masters, LinkedHashMap<String, Integer> records) {
+        this.path = path;
+        this.size = size;
+        this.modified = modified;
+        this.hash = hash;
+        this.masters = masters;
+        this.records = records;
+    }
+
+    /**
+     * Returns the manifest of a plugin in the data folder, from the cache if
+     * it is still up to date, otherwise by scanning the plugin.
+     *
+     * @param listing Plugin to get the manifest of.
+     * @return The plugin's manifest, or null if it could not be read.
+     */
+    static public PluginManifest get(ModListing listing) {
+        return get(new File(SPGlobal.pathToDataFixed + listing.print()));
+    }
+
+    static PluginManifest get(File plugin) {
+        if (!plugin.isFile()) {
+            return null;
+        }
+        String key = plugin.getPath().toUpperCase();
+        PluginManifest out;
+        synchronized (loaded) {
+            out = loaded.get(key);
+        }
+        if (out != null && out.matches(plugin)) {
+            return out;
+        }
+        // Scanned outside the lock, so importers on other plugins aren't held up
+        out = load(plugin);
+        if (out == null || !out.matches(plugin)) {
+            try {
+                out = scan(plugin, out);
+            } catch (IOException ex) {
+                SPGlobal.logException(ex);
+                SPGlobal.logError(header, "Could not scan " + plugin);
+                return null;
+            }
+            if (!SPGlobal.testing) {
+                save(out);
+            }
+        }
+        synchronized (loaded) {
+            loaded.put(key, out);
+        }
+        return out;
+    }
+
+    boolean matches(File plugin) {
+        return plugin.length() == size && plugin.lastModified() == modified;
+    }
+
+    /**
+     * Reads the plugin's header and walks its GRUPs without parsing any
+     * records. A previous manifest is only used to log whether the contents
+     * actually changed or the plugin was just touched.
+     */
+    static PluginManifest scan(File plugin, PluginManifest previous) throws IOException {
+        long size = plugin.length();
+        long modified = plugin.lastModified();
+        long hash = hash(plugin);
+        if (SPGlobal.logging()) {
+            if (previous != null && previous.hash == hash) {
+                SPGlobal.logSync(header, plugin.getName() + " was touched but its contents are unchanged.");
+            } else {
+                SPGlobal.logSync(header, "Scanning " + plugin.getName());
+            }
+        }
+        ArrayList<String> masters;
+        LinkedHashMap<String, Integer> records;
+        RecordFileChannel in = RecordFileChannel.open(plugin.getPath());
+        try {
+            Mod mod = new Mod(new ModListing(plugin.getName()), SPImporter.extractHeaderInfo(in));
+            masters = mod.getMastersStrings();
+            records = SPImporter.scanRecordCounts(in);
+        } catch (Exception ex) {
+            throw new IOException("Could not read the header of " + plugin, ex);
+        } finally {
+            in.close();
+        }
+        return new PluginManifest(plugin.getPath(), size, modified, hash, masters, records);
+    }
+
+    static long hash(File plugin) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel in = FileChannel.open(plugin.toPath(), StandardOpenOption.READ)) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    static File getManifestFile(File plugin) throws IOException {
+        return new File(SPGlobal.getSkyProcDocuments(), "Plugin Manifests" + File.separator
+                + Integer.toHexString(plugin.getPath().toUpperCase().hashCode()) + "_" + plugin.getName() + ".mf");
+    }
+
+    static PluginManifest load(File plugin) {
+        try {
+            File f = getManifestFile(plugin);
+            if (!f.isFile()) {
+                return null;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(f.toPath())));
+            if (in.readInt() != version) {
+                return null;
+            }
+            String path = in.readUTF();
+            if (!path.equalsIgnoreCase(plugin.getPath())) {
+                return null;
+            }
+            long size = in.readLong();
+            long modified = in.readLong();
+            long hash = in.readLong();
+            int numMasters = in.readInt();
+            ArrayList<String> masters = new ArrayList<>(numMasters);
+            for (int i = 0; i < numMasters; i++) {
+                masters.add(in.readUTF());
+            }
+            int numGRUPs = in.readInt();
+            LinkedHashMap<String, Integer> records = new LinkedHashMap<>();
+            for (int i = 0; i < numGRUPs; i++) {
+                records.put(in.readUTF(), in.readInt());
+            }
+            return new PluginManifest(path, size, modified, hash, masters, records);
+        } catch (IOException ex) {
+            SPGlobal.logException(ex);
+            return null;
+        }
+    }
+
+    static void save(PluginManifest manifest) {
+        try {
+            File f = getManifestFile(new File(manifest.path));
+            f.getParentFile().mkdirs();
+            File tmp = new File(f.getPath() + "Tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(version);
+                out.writeUTF(manifest.path);
+                out.writeLong(manifest.size);
+                out.writeLong(manifest.modified);
+                out.writeLong(manifest.hash);
+                out.writeInt(manifest.masters.size());
+                for (String master : manifest.masters) {
+                    out.writeUTF(master);
+                }
+                out.writeInt(manifest.records.size());
+                for (Map.Entry<String, Integer> e : manifest.records.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeInt(e.getValue());
+                }
+            }
+            if (f.isFile()) {
+                f.delete();
+            }
+            tmp.renameTo(f);
+        } catch (IOException ex) {
+            SPGlobal.logException(ex);
+            SPGlobal.logError(header, "Could not save manifest for " + manifest.path);
+        }
+    }
+
+    /**
+     * @return Size of the plugin in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Modified date of the plugin.
+     */
+    public long getModified() {
+        return modified;
+    }
+
+    /**
+     * @return CRC32 of the plugin's contents.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return Names of the plugin's masters.
+     */
+    public ArrayList<String> getMasters() {
+        return new ArrayList<>(masters);
+    }
+
+    /**
+     * @param type GRUP to check.
+     * @return Number of records in that GRUP, counting nested ones.
+     */
+    public int getRecordCount(GRUP_TYPE type) {
+        Integer count = records.get(type.toString());
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @return GRUPs in the plugin that have at least one record.
+     */
+    public ArrayList<GRUP_TYPE> getContainedTypes() {
+        ArrayList<GRUP_TYPE> out = new ArrayList<>();
+        for (Map.Entry<String, Integer> e : records.entrySet()) {
+            if (e.getValue() > 0) {
+                out.add(GRUP_TYPE.valueOf(e.getKey()));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @param types GRUPs to look for.
+     * @return True if the plugin has records in any of the given GRUPs.
+     */
+    public boolean containsAny(GRUP_TYPE... types) {
+        for (GRUP_TYPE t : types) {
+            if (getRecordCount(t) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return new File(path).getName() + " (" + records.size() + " GRUPs, hash " + Long.toHexString(hash) + ")";
+    }
+}
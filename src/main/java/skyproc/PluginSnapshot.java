@@ -0,0 +1,170 @@
+package skyproc;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/**
+ * Trimmed down copies of plugins, holding only the TES4 header and the GRUPs
+ * a patcher asked for, with every compressed record already inflated. A
+ * snapshot is itself a valid plugin, so it is imported by the regular parser;
+ * it just has far less to read and nothing to decompress.<br><br>
+ * Snapshots are kept in "SkyProc/Plugin Snapshots" in My Documents, and named
+ * after the plugin's path, size, modified date, content hash and the set of
+ * GRUPs requested. Ones for older versions of a plugin are removed when a new
+ * one is made, and the least recently used are evicted once the folder grows
+ * past SPGlobal.setImportSnapshotCacheSize().
+ *
+ * @author Justin Swanson
+ */
+class PluginSnapshot {
+
+    static final int version = 1;
+    static final String header = "Plugin Snapshot";
+
+    /**
+     * @param plugin  Plugin being imported.
+     * @param targets GRUPs being imported.
+     * @return Snapshot of the plugin holding those GRUPs, made now if there
+     * wasn't an up to date one, or null if one could not be made.
+     */
+    static File get(File plugin, GRUP_TYPE[] targets) {
+        if (targets.length == 0) {
+            return null;
+        }
+        PluginManifest manifest = PluginManifest.get(plugin);
+        if (manifest == null) {
+            return null;
+        }
+        try {
+            File snapshot = getSnapshotFile(plugin, manifest, targets);
+            if (snapshot.isFile()) {
+                if (SPGlobal.logging()) {
+                    SPGlobal.logSync(header, "Using snapshot of " + plugin.getName());
+                }
+                // Marks it as recently used, so it is the last to be evicted
+                snapshot.setLastModified(System.currentTimeMillis());
+                return snapshot;
+            }
+            removeStale(plugin, manifest);
+            long start = System.nanoTime();
+            build(plugin, snapshot, targets);
+            if (SPGlobal.logging()) {
+                SPGlobal.logSync(header, "Saved snapshot of " + plugin.getName() + " in " + (System.nanoTime() - start) / 1000000
+                        + " ms: " + snapshot.length() + " of " + plugin.length() + " bytes.");
+            }
+            evict(snapshot, SPGlobal.snapshotCacheSize);
+            return snapshot;
+        } catch (Exception ex) {
+            SPGlobal.logException(ex);
+            SPGlobal.logError(header, "Could not make a snapshot of " + plugin + ", importing it directly.");
+            return null;
+        }
+    }
+
+    static String getPrefix(File plugin) {
+        return Integer.toHexString(plugin.getPath().toUpperCase().hashCode()) + "_" + plugin.getName() + "_";
+    }
+
+    static String getStamp(PluginManifest manifest) {
+        return "v" + version + "_" + Long.toHexString(manifest.getSize()) + "_" + Long.toHexString(manifest.getModified())
+                + "_" + Long.toHexString(manifest.getHash()) + "_";
+    }
+
+    static File getSnapshotFile(File plugin, PluginManifest manifest, GRUP_TYPE[] targets) throws IOException {
+        GRUP_TYPE[] sorted = targets.clone();
+        Arrays.sort(sorted);
+        CRC32 key = new CRC32();
+        for (GRUP_TYPE g : sorted) {
+            key.update(g.ordinal());
+        }
+        return new File(getFolder(), getPrefix(plugin) + getStamp(manifest) + Long.toHexString(key.getValue()) + ".snap");
+    }
+
+    static File getFolder() throws IOException {
+        return new File(SPGlobal.getSkyProcDocuments(), "Plugin Snapshots");
+    }
+
+    static void removeStale(File plugin, PluginManifest manifest) throws IOException {
+        String prefix = getPrefix(plugin);
+        String current = prefix + getStamp(manifest);
+        File[] files = getFolder().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (f.getName().startsWith(prefix) && !f.getName().startsWith(current)) {
+                f.delete();
+            }
+        }
+    }
+
+    /**
+     * Removes the snapshots used least recently until the rest fit in the
+     * given number of bytes.
+     *
+     * @param keep  Snapshot just made, which is never removed.
+     * @param limit Most bytes of snapshots to keep.
+     */
+    static void evict(File keep, long limit) throws IOException {
+        File[] files = getFolder().listFiles((dir, name) -> name.endsWith(".snap"));
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File f : files) {
+            if (total <= limit) {
+                break;
+            }
+            if (!f.equals(keep)) {
+                long length = f.length();
+                if (f.delete()) {
+                    total -= length;
+                    if (SPGlobal.logging()) {
+                        SPGlobal.logSync(header, "Evicted snapshot " + f.getName());
+                    }
+                }
+            }
+        }
+    }
+
+    static void build(File plugin, File snapshot, GRUP_TYPE[] targets) throws Exception {
+        snapshot.getParentFile().mkdirs();
+        ArrayList<String> remaining = new ArrayList<>(targets.length);
+        for (GRUP_TYPE g : targets) {
+            remaining.add(g.toString());
+        }
+        File tmp = new File(snapshot.getPath() + "Tmp");
+        RecordFileChannel in = RecordFileChannel.open(plugin.getPath());
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16)) {
+            ByteBuffer tes = SPImporter.extractHeaderInfo(in);
+            byte[] bytes = new byte[tes.remaining()];
+            tes.get(bytes);
+            out.write(bytes);
+            String type;
+            while (!remaining.isEmpty() && !"NULL".equals(type = SPImporter.scanToGRUPStart(in, remaining))) {
+                remaining.remove(type);
+                RecordCompression.inflateGRUP(in.extractByteBuffer(0, SPImporter.getGRUPsize(in)), out);
+            }
+        } catch (Exception ex) {
+            tmp.delete();
+            throw ex;
+        } finally {
+            in.close();
+        }
+        Files.move(tmp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -11,8 +11,9 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.DataFormatException;
 
 /**
@@ -22,8 +23,10 @@ import java.util.zip.DataFormatException;
  */
 public abstract class Record implements Serializable {
 
-    final static HashMap<String, ArrayList<String>> typeLists = new HashMap<>();
-    private static int datasize = -1;
+    final static Map<String, ArrayList<String>> typeLists = new ConcurrentHashMap<>();
+    // Kept per thread so plugins can be parsed concurrently.
+    private static final ThreadLocal<Integer> datasize = ThreadLocal.withInitial(() -> -1);
+    static final int XXXX = FourCC.of("XXXX");
 
     Record() {
     }
@@ -45,16 +48,33 @@ public abstract class Record implements Serializable {
      * explicitly returned)
      */
     static String getNextType(LImport in) {
-        datasize = -1;
-        String type = Ln.arrayToString(in.getInts(0, 4));
-        if (type.equals("XXXX")) {
+        return FourCC.name(getNextTypeCode(in));
+    }
+
+    /**
+     * Same as getNextType(), but returns the record type packed into an int.
+     *
+     * @param in the input buffer to read from
+     * @return the packed type of the next real record
+     * @see FourCC
+     */
+    static int getNextTypeCode(LImport in) {
+        datasize.set(-1);
+        int type = peekType(in);
+        if (type == XXXX) {
             int blocksize = Ln.arrayToInt(in.extract(4, 2));
-            datasize = Ln.arrayToInt(in.extract(blocksize));
-            type = Ln.arrayToString(in.getInts(0, 4));
+            datasize.set(Ln.arrayToInt(in.extract(blocksize)));
+            type = peekType(in);
         }
         return type;
     }
 
+    static int peekType(LImport in) {
+        int type = in.extractInt(4);
+        in.skip(-4);
+        return type;
+    }
+
     /**
      * Size of the next record's datablock, if larger than 2^16 -1 byte.
      * If the previously extracted record type started as "XXXX" type, this
@@ -67,13 +87,17 @@ public abstract class Record implements Serializable {
      * -1 if no such record preceded the last tag extracted with getNextType()
      */
     static int getDataBlockSize() {
-        return datasize;
+        return datasize.get();
     }
 
     static void logMod(Mod srcMod, String header, String... data) {
         SPGlobal.logMod(srcMod, header, data);
     }
 
+    static boolean loggingMod() {
+        return SPGlobal.logging(SPGlobal.LogCategory.MOD);
+    }
+
     void parseData(LImport in, Mod srcMod) throws BadRecord, BadParameter, DataFormatException {
         in.skip(getIdentifierLength() + getSizeLength());
     }
@@ -119,7 +143,7 @@ public abstract class Record implements Serializable {
     void export(ModExporter out) throws IOException {
         if (isValid()) {
             out.write(getType());
-            out.write(getContentLength(out.getExportMod().isFlag(Mod.Mod_Flags.STRING_TABLED)));
+            out.write(out.contentLength(this));
         }
     }
 
@@ -148,7 +172,9 @@ public abstract class Record implements Serializable {
 
     LImport extractData(LImport in, int size) {
         LImport extracted;
-        if (SPGlobal.streamMode && (in instanceof RecordShrinkArray || in instanceof LInChannel)) {
+        if (in instanceof RecordShrinkArray && ((RecordShrinkArray) in).isView()) {
+            extracted = ((RecordShrinkArray) in).slice(size);
+        } else if (SPGlobal.streamMode && (in instanceof RecordShrinkArray || in instanceof LInChannel)) {
             extracted = new RecordShrinkArray(in, size);
         } else {
             extracted = new LShrinkArray(in, size);
@@ -175,6 +201,17 @@ public abstract class Record implements Serializable {
 
     abstract int getContentLength(boolean isStringTabled);
 
+    int getContentLength(ModExporter out) {
+        return getContentLength(out.isStringTabled());
+    }
+
+    /**
+     * Total length, with content lengths taken from the exporter's cache.
+     */
+    int getTotalLength(ModExporter out) {
+        return out.contentLength(this) + getHeaderLength();
+    }
+
     boolean logging() {
         return SPGlobal.logging();
     }
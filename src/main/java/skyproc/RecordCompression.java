@@ -0,0 +1,316 @@
+package skyproc;
+
+import lev.LImport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Inflates compressed records on import, and compresses large records in
+ * exported GRUPs. Each thread reuses its own Inflater and Deflater rather
+ * than creating one per record.
+ *
+ * @author Justin Swanson
+ */
+class RecordCompression {
+
+    static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+    static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(Deflater::new);
+    static final int headerSize = 24;
+    static final int compressedFlag = 1 << MajorRecord.MajorFlags.Compressed.value;
+
+    /**
+     * @param in Data of a compressed record, positioned after its header.
+     * @return The decompressed data, as a view so subrecords can be streamed
+     * from it later.
+     * @throws DataFormatException
+     */
+    static RecordShrinkArray inflate(LImport in) throws DataFormatException {
+        int size = in.extractInt(4);
+        byte[] raw = in.extract(in.available());
+        return new RecordShrinkArray(ByteBuffer.wrap(inflate(raw, 0, raw.length, size)), 0);
+    }
+
+    /**
+     * @param raw    Array holding the zlib stream.
+     * @param start  Offset of the stream.
+     * @param length Length of the stream.
+     * @param size   Expected length once inflated.
+     * @return The inflated data.
+     * @throws DataFormatException
+     */
+    static byte[] inflate(byte[] raw, int start, int length, int size) throws DataFormatException {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(raw, start, length);
+        return inflate(inflater, size);
+    }
+
+    /**
+     * @param in     Buffer holding the zlib stream, which may be a mapped
+     *               view of the plugin.
+     * @param start  Offset of the stream.
+     * @param length Length of the stream.
+     * @param size   Expected length once inflated.
+     * @return The inflated data.
+     * @throws DataFormatException
+     */
+    static byte[] inflate(ByteBuffer in, int start, int length, int size) throws DataFormatException {
+        ByteBuffer raw = in.duplicate();
+        raw.limit(start + length).position(start);
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(raw);
+        return inflate(inflater, size);
+    }
+
+    static byte[] inflate(Inflater inflater, int size) throws DataFormatException {
+        byte[] out = new byte[size];
+        int read = 0;
+        while (read < size && !inflater.finished()) {
+            int amount = inflater.inflate(out, read, size - read);
+            if (amount == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+            read += amount;
+        }
+        if (read != size) {
+            throw new DataFormatException("Compressed record inflated to " + read + " bytes, expected " + size);
+        }
+        return out;
+    }
+
+    /**
+     * @param data  Array holding the bytes to compress.
+     * @param start Offset of the first byte.
+     * @param length Number of bytes.
+     * @return The length of the uncompressed data followed by the zlib stream.
+     */
+    static byte[] deflate(byte[] data, int start, int length) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(data, start, length);
+        deflater.finish();
+        byte[] out = new byte[Math.max(64, length / 2)];
+        int written = 4;
+        while (!deflater.finished()) {
+            if (written == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            written += deflater.deflate(out, written, out.length - written);
+        }
+        ByteBuffer.wrap(out, 0, 4).order(ByteOrder.LITTLE_ENDIAN).putInt(length);
+        return Arrays.copyOf(out, written);
+    }
+
+    /**
+     * Rewrites an exported GRUP, compressing every record with at least the
+     * given amount of data. Records are compressed in parallel, and the sizes
+     * of the GRUPs holding them are updated to match.
+     *
+     * @param data      One exported top level GRUP.
+     * @param threshold Smallest record data size worth compressing.
+     * @return The rewritten GRUP, or data itself if no record was compressed.
+     * @throws IOException
+     */
+    static byte[] compressGRUP(byte[] data, int threshold) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+
+        ArrayList<Integer> candidates = new ArrayList<>();
+        collect(in, 0, data.length, threshold, candidates);
+        if (candidates.isEmpty()) {
+            return data;
+        }
+        byte[][] packed = new byte[candidates.size()][];
+        IntStream.range(0, packed.length).parallel().forEach(i -> {
+            int pos = candidates.get(i);
+            int size = in.getInt(pos + 4);
+            byte[] out = deflate(data, pos + headerSize, size);
+            packed[i] = out.length < size ? out : null;
+        });
+
+        Rewriter rewriter = new Rewriter(in, candidates, packed, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rewriter.measure(0, data.length));
+        rewriter.nextCandidate = 0;
+        rewriter.write(out, 0, data.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes out a top level GRUP with every compressed record inflated, and
+     * the sizes of the GRUPs holding them updated to match.
+     *
+     * @param grup Contents of the GRUP, from its header on. Read in place, so
+     *             a mapped view of the plugin is never copied whole.
+     * @param out  Stream to write the GRUP to.
+     * @throws IOException
+     * @throws DataFormatException If a compressed record could not be
+     * inflated.
+     */
+    static void inflateGRUP(ByteBuffer grup, OutputStream out) throws IOException, DataFormatException {
+        ByteBuffer in = grup.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int end = in.limit();
+
+        ArrayList<Integer> candidates = new ArrayList<>();
+        collectCompressed(in, 0, end, candidates);
+        byte[][] inflated = new byte[candidates.size()][];
+        for (int i = 0; i < inflated.length; i++) {
+            int pos = candidates.get(i);
+            inflated[i] = inflate(in, pos + headerSize + 4, in.getInt(pos + 4) - 4, in.getInt(pos + headerSize));
+        }
+
+        Rewriter rewriter = new Rewriter(in, candidates, inflated, false);
+        rewriter.measure(0, end);
+        rewriter.nextCandidate = 0;
+        rewriter.write(out, 0, end);
+    }
+
+    static boolean isGRUP(ByteBuffer in, int pos) {
+        return in.get(pos) == 'G' && in.get(pos + 1) == 'R' && in.get(pos + 2) == 'U' && in.get(pos + 3) == 'P';
+    }
+
+    static void collect(ByteBuffer in, int pos, int end, int threshold, ArrayList<Integer> out) {
+        while (pos < end) {
+            int size = in.getInt(pos + 4);
+            if (isGRUP(in, pos)) {
+                collect(in, pos + headerSize, pos + size, threshold, out);
+                pos += size;
+            } else {
+                if (size >= threshold && (in.getInt(pos + 8) & compressedFlag) == 0) {
+                    out.add(pos);
+                }
+                pos += headerSize + size;
+            }
+        }
+    }
+
+    static void collectCompressed(ByteBuffer in, int pos, int end, ArrayList<Integer> out) {
+        while (pos < end) {
+            int size = in.getInt(pos + 4);
+            if (isGRUP(in, pos)) {
+                collectCompressed(in, pos + headerSize, pos + size, out);
+                pos += size;
+            } else {
+                if ((in.getInt(pos + 8) & compressedFlag) != 0) {
+                    out.add(pos);
+                }
+                pos += headerSize + size;
+            }
+        }
+    }
+
+    /**
+     * Walks the GRUP twice in the same order: once to work out the new GRUP
+     * sizes, then again to write everything out.
+     */
+    static class Rewriter {
+
+        final ByteBuffer in;
+        final ArrayList<Integer> candidates;
+        final byte[][] packed;
+        // Whether replaced records are being compressed, or inflated
+        final boolean compress;
+        final ArrayList<Integer> grupSizes = new ArrayList<>();
+        int nextCandidate;
+        int nextGRUP;
+        byte[] scratch;
+
+        Rewriter(ByteBuffer in, ArrayList<Integer> candidates, byte[][] packed, boolean compress) {
+            this.in = in;
+            this.candidates = candidates;
+            this.packed = packed;
+            this.compress = compress;
+        }
+
+        byte[] packedAt(int pos) {
+            if (nextCandidate < candidates.size() && candidates.get(nextCandidate) == pos) {
+                return packed[nextCandidate++];
+            }
+            return null;
+        }
+
+        int measure(int pos, int end) {
+            int total = 0;
+            while (pos < end) {
+                int size = in.getInt(pos + 4);
+                if (isGRUP(in, pos)) {
+                    int slot = grupSizes.size();
+                    grupSizes.add(0);
+                    int grupSize = headerSize + measure(pos + headerSize, pos + size);
+                    grupSizes.set(slot, grupSize);
+                    total += grupSize;
+                    pos += size;
+                } else {
+                    byte[] p = packedAt(pos);
+                    total += headerSize + (p != null ? p.length : size);
+                    pos += headerSize + size;
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Writes out bytes of the GRUP. Buffers without an array, such as
+         * mapped views, are copied out a piece at a time.
+         */
+        void copy(OutputStream out, int pos, int length) throws IOException {
+            if (in.hasArray()) {
+                out.write(in.array(), in.arrayOffset() + pos, length);
+                return;
+            }
+            if (scratch == null) {
+                scratch = new byte[1 << 16];
+            }
+            ByteBuffer from = in.duplicate();
+            from.position(pos);
+            while (length > 0) {
+                int amount = Math.min(length, scratch.length);
+                from.get(scratch, 0, amount);
+                out.write(scratch, 0, amount);
+                length -= amount;
+            }
+        }
+
+        void write(OutputStream out, int pos, int end) throws IOException {
+            byte[] header = new byte[headerSize];
+            ByteBuffer h = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            while (pos < end) {
+                int size = in.getInt(pos + 4);
+                ByteBuffer from = in.duplicate();
+                from.position(pos);
+                from.get(header);
+                if (isGRUP(in, pos)) {
+                    h.putInt(4, grupSizes.get(nextGRUP++));
+                    out.write(header);
+                    write(out, pos + headerSize, pos + size);
+                    pos += size;
+                } else {
+                    byte[] p = packedAt(pos);
+                    if (p != null) {
+                        h.putInt(4, p.length);
+                        if (compress) {
+                            h.putInt(8, h.getInt(8) | compressedFlag);
+                        } else {
+                            h.putInt(8, h.getInt(8) & ~compressedFlag);
+                        }
+                        out.write(header);
+                        out.write(p);
+                    } else {
+                        out.write(header);
+                        copy(out, pos + headerSize, size);
+                    }
+                    pos += headerSize + size;
+                }
+            }
+        }
+    }
+}
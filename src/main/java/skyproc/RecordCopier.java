@@ -0,0 +1,70 @@
+package skyproc;
+
+import lev.LImport;
+import lev.LShrinkArray;
+import skyproc.exceptions.BadParameter;
+import skyproc.exceptions.BadRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+/**
+ * Deep copies subrecords by exporting them to memory and parsing the bytes
+ * into a fresh instance from the record's prototype, the same as if the
+ * record had been written to a plugin and imported again.<br><br>
+ * Copies are exported as part of a scratch mod that isn't string tabled, so
+ * text is written inline and no real mod's string tables are touched.
+ * FormIDs don't go through the bytes at all: each one is copied as it is
+ * exported and handed to its counterpart as the copy is parsed, so the
+ * source record's FormIDs are never touched.
+ *
+ * @author Justin Swanson
+ */
+class RecordCopier {
+
+    static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * @param in     Subrecord to copy.
+     * @param proto  Prototype of the record holding it.
+     * @param srcMod Mod the subrecord was imported from, which any FormIDs
+     *               it has not resolved yet are resolved against. May be null.
+     * @return A deep copy of in, or in itself if it could not be copied.
+     */
+    static SubRecord copy(SubRecord in, SubPrototype proto, Mod srcMod) {
+        Scratch mod = scratch.get();
+        // Parsing a copy can copy again, which mustn't lose the outer FormIDs
+        List<FormID> outer = mod.formIDs;
+        mod.formIDs = new ArrayList<>();
+        try {
+            SubRecord out = proto.get(in.getType()).getNew(in.getType());
+            ModExporter exporter = new ModExporter(mod, mod.formIDs);
+            exporter.setSourceMod(srcMod);
+            in.export(exporter);
+            LImport bytes = new LShrinkArray(exporter.toByteArray());
+            while (!bytes.isDone()) {
+                Record.getNextTypeCode(bytes);
+                out.parseData(out.extractRecordData(bytes), mod);
+            }
+            return out;
+        } catch (IOException | BadRecord | BadParameter | DataFormatException | RuntimeException ex) {
+            SPGlobal.logException(ex);
+            SPGlobal.logError("RecordCopier", "Could not copy " + in + ", so the copy shares it with the original.");
+            return in;
+        } finally {
+            mod.formIDs = outer;
+        }
+    }
+
+    static class Scratch extends Mod {
+
+        // FormIDs set aside by the copy being made, by the position written in their place
+        List<FormID> formIDs;
+
+        Scratch() {
+            super(new ModListing("SkyProc Copy", false), true);
+        }
+    }
+}
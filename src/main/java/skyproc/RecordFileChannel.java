@@ -29,6 +29,18 @@ class RecordFileChannel extends LInChannel {
         slice(rfc, allocation);
     }
 
+    /**
+     * @param path Path of the plugin to open.
+     * @return A memory mapped channel if SPGlobal.setMemoryMappedImport() is
+     * on, otherwise a regular one.
+     */
+    static RecordFileChannel open(String path) {
+        if (SPGlobal.memoryMapped) {
+            return new MappedRecordFileChannel(path);
+        }
+        return new RecordFileChannel(path);
+    }
+
     @Override
     public void openFile(String path) {
         super.openFile(path);
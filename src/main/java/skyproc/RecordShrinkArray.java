@@ -3,6 +3,8 @@ package skyproc;
 import lev.LImport;
 import lev.LShrinkArray;
 
+import java.nio.ByteBuffer;
+
 /**
  * For use with DirtyParsingIterator to retrieve subrecord data.
  *
@@ -11,7 +13,9 @@ import lev.LShrinkArray;
  */
 public class RecordShrinkArray extends LShrinkArray {
 
-    final int offset;
+    final long offset;
+    // Set when the array is a view over a buffer, so sub-views can share it
+    final ByteBuffer source;
 
     /**
      * @param rhs
@@ -19,7 +23,8 @@ public class RecordShrinkArray extends LShrinkArray {
      */
     public RecordShrinkArray(final LImport rhs, final int high) {
         super(rhs, high);
-        offset = (int) rhs.pos();
+        offset = rhs.pos();
+        source = null;
     }
 
     /**
@@ -27,13 +32,29 @@ public class RecordShrinkArray extends LShrinkArray {
      */
     public RecordShrinkArray(LShrinkArray rhs) {
         super(rhs);
-        offset = (int) rhs.pos();
+        offset = rhs.pos();
+        source = null;
+    }
+
+
+    /**
+     * @param in     View of the data.
+     * @param offset File position the view starts at.
+     */
+    public RecordShrinkArray(ByteBuffer in, long offset) {
+        this(in, offset, in.duplicate());
     }
 
+    private RecordShrinkArray(ByteBuffer in, long offset, ByteBuffer source) {
+        super(in);
+        this.offset = offset;
+        this.source = source;
+    }
 
     public RecordShrinkArray() {
         super(new byte[0]);
         offset = 0;
+        source = null;
     }
 
     /**
@@ -42,6 +63,33 @@ public class RecordShrinkArray extends LShrinkArray {
     public RecordShrinkArray(byte[] in) {
         super(in);
         offset = 0;
+        source = null;
+    }
+
+    boolean isView() {
+        return source != null;
+    }
+
+    /**
+     * @return A separate array over the same bytes, positioned at the start.
+     * Only for arrays that are views.
+     */
+    RecordShrinkArray view() {
+        return new RecordShrinkArray(source.duplicate(), offset);
+    }
+
+    /**
+     * Creates a view of the next bytes without copying them. Does not move
+     * the position. Only for arrays that are views.
+     *
+     * @param size Number of bytes to view.
+     */
+    RecordShrinkArray slice(int size) {
+        int start = (int) (pos() - offset);
+        ByteBuffer out = source.duplicate();
+        out.position(start);
+        out.limit(start + size);
+        return new RecordShrinkArray(out.slice(), pos());
     }
 
     @Override
@@ -0,0 +1,109 @@
+package skyproc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the records of several GRUPs in order, without copying
+ * them into one list. Splits between GRUPs while there is more than one left,
+ * then within the last GRUP. Each GRUP's list is let go once its records have
+ * all been read, or when close() is called.
+ *
+ * @author Justin Swanson
+ */
+class RecordSpliterator implements Spliterator<MajorRecord> {
+
+    final List<Spliterator<? extends MajorRecord>> parts;
+    // Holds on the GRUPs' lists, kept by the spliterator the parts came from
+    final List<GRUP.Hold> holds;
+    int index = 0;
+
+    RecordSpliterator(List<Spliterator<? extends MajorRecord>> parts) {
+        this(parts, new ArrayList<>(0));
+    }
+
+    RecordSpliterator(List<Spliterator<? extends MajorRecord>> parts, List<GRUP.Hold> holds) {
+        this.parts = parts;
+        this.holds = holds;
+    }
+
+    /**
+     * @param grups GRUPs to step through, in order.
+     * @return A spliterator over all records in the GRUPs.
+     */
+    static RecordSpliterator of(Iterable<? extends GRUP> grups) {
+        ArrayList<Spliterator<? extends MajorRecord>> parts = new ArrayList<>();
+        ArrayList<GRUP.Hold> holds = new ArrayList<>();
+        for (GRUP<?> g : grups) {
+            if (g != null && !g.isEmpty()) {
+                GRUP<?>.Range range = g.spliterator();
+                parts.add(range);
+                holds.add(range.hold);
+            }
+        }
+        return new RecordSpliterator(parts, holds);
+    }
+
+    /**
+     * Lets go of every GRUP list still held, for streams closed before they
+     * were read to the end.
+     */
+    void close() {
+        for (GRUP.Hold hold : holds) {
+            hold.release();
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super MajorRecord> action) {
+        while (index < parts.size()) {
+            if (parts.get(index).tryAdvance(action)) {
+                return true;
+            }
+            index++;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super MajorRecord> action) {
+        for (; index < parts.size(); index++) {
+            parts.get(index).forEachRemaining(action);
+        }
+    }
+
+    @Override
+    public Spliterator<MajorRecord> trySplit() {
+        int remaining = parts.size() - index;
+        if (remaining > 1) {
+            int mid = index + remaining / 2;
+            Spliterator<MajorRecord> prefix = new RecordSpliterator(new ArrayList<>(parts.subList(index, mid)));
+            index = mid;
+            return prefix;
+        } else if (remaining == 1) {
+            Spliterator<? extends MajorRecord> prefix = parts.get(index).trySplit();
+            if (prefix != null) {
+                ArrayList<Spliterator<? extends MajorRecord>> list = new ArrayList<>(1);
+                list.add(prefix);
+                return new RecordSpliterator(list);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        long size = 0;
+        for (int i = index; i < parts.size(); i++) {
+            size += parts.get(i).estimateSize();
+        }
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | SIZED | SUBSIZED;
+    }
+}
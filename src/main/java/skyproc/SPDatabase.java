@@ -7,6 +7,8 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * An organized set of Mods forces load order. It is somewhat unnecessary at the
@@ -21,9 +23,28 @@ public class SPDatabase implements Iterable<Mod> {
      * Delimiter used in separating modname from date in storage files.
      */
     static public final String dateDelim = "<--DATE-->";
-    static ArrayList<ModListing> activePlugins = new ArrayList<>();
-    static final ArrayList<ModListing> addedPlugins = new ArrayList<>();
-    static final Map<ModListing, Mod> modLookup = new TreeMap<>();
+    // The state itself belongs to the current SPSession
+
+    static ArrayList<ModListing> activePlugins() {
+        return SPSession.current().activePlugins;
+    }
+
+    static ArrayList<ModListing> addedPlugins() {
+        return SPSession.current().addedPlugins;
+    }
+
+    static Map<ModListing, Mod> modLookup() {
+        return SPSession.current().modLookup;
+    }
+
+    // Override chains of every record in the database, in load order
+    static FormIDMap<ArrayList<IndexEntry>> formIndex() {
+        return SPSession.current().formIndex;
+    }
+
+    static Map<String, ArrayList<IndexEntry>> edidIndex() {
+        return SPSession.current().edidIndex;
+    }
 
     /**
      * Creates a new SPDatabase container to load mods into.
@@ -32,9 +53,15 @@ public class SPDatabase implements Iterable<Mod> {
     }
 
     static void clear() {
-        activePlugins.clear();
-        addedPlugins.clear();
-        modLookup.clear();
+        for (Mod m : modLookup().values()) {
+            m.inDatabase = false;
+        }
+        activePlugins().clear();
+        addedPlugins().clear();
+        SPSession.current().invalidateRanks();
+        modLookup().clear();
+        formIndex().clear();
+        edidIndex().clear();
     }
 
     /**
@@ -46,7 +73,7 @@ public class SPDatabase implements Iterable<Mod> {
      */
     static public int modIndex(ModListing listing) {
         int counter = 0;
-        for (Mod m : modLookup.values()) {
+        for (Mod m : modLookup().values()) {
             if (m.getName().equalsIgnoreCase(listing.print())) {
                 return counter;
             }
@@ -63,7 +90,7 @@ public class SPDatabase implements Iterable<Mod> {
         if (listing.equals(SPGlobal.getGlobalPatch().getInfo())) {
             return SPGlobal.getGlobalPatch();
         }
-        return modLookup.get(listing);
+        return modLookup().get(listing);
     }
 
     /**
@@ -71,15 +98,25 @@ public class SPDatabase implements Iterable<Mod> {
      * @return True if database contains a matching Mod.
      */
     static public boolean hasMod(ModListing listing) {
-        return modLookup.containsKey(listing);
+        return modLookup().containsKey(listing);
     }
 
     /**
      * @param listing ModListing to remove.
      */
     static public void removeMod(ModListing listing) {
-        addedPlugins.remove(listing);
-        modLookup.remove(listing);
+        // Removed from the lookup first, while its rank still matches its position
+        Mod m = modLookup().remove(listing);
+        addedPlugins().remove(listing);
+        SPSession.current().invalidateRanks();
+        if (m != null) {
+            m.inDatabase = false;
+            for (GRUP<?> g : m.GRUPs.values()) {
+                for (MajorRecord r : g.records()) {
+                    unindex(m, r);
+                }
+            }
+        }
     }
 
     /**
@@ -89,7 +126,7 @@ public class SPDatabase implements Iterable<Mod> {
      * @return
      */
     static public Mod getMod(int index) {
-        return modLookup.get(addedPlugins.get(index));
+        return modLookup().get(addedPlugins().get(index));
     }
 
     /**
@@ -97,7 +134,7 @@ public class SPDatabase implements Iterable<Mod> {
      * while patching.
      */
     static public ArrayList<ModListing> getMods() {
-        return new ArrayList<>(addedPlugins);
+        return new ArrayList<>(addedPlugins());
     }
 
     /**
@@ -113,9 +150,41 @@ public class SPDatabase implements Iterable<Mod> {
     }
 
 
+    /**
+     * @param grup_types GRUPs to stream over. Leave empty for all GRUPs.
+     * @return A sequential stream over the records of every mod in the
+     * database, in load order.  Overrides are not resolved; a record appears
+     * once per mod that contains it.
+     */
+    static public Stream<MajorRecord> stream(GRUP_TYPE... grup_types) {
+        return StreamSupport.stream(spliterator(grup_types), false);
+    }
+
+    /**
+     * @param grup_types GRUPs to stream over. Leave empty for all GRUPs.
+     * @return A parallel stream over the records of every mod in the database.
+     */
+    static public Stream<MajorRecord> parallelStream(GRUP_TYPE... grup_types) {
+        return StreamSupport.stream(spliterator(grup_types), true);
+    }
+
+    static RecordSpliterator spliterator(GRUP_TYPE... grup_types) {
+        ArrayList<GRUP> grups = new ArrayList<>();
+        for (Mod m : modLookup().values()) {
+            if (grup_types.length == 0) {
+                grups.addAll(m.GRUPs.values());
+            } else {
+                for (GRUP_TYPE t : grup_types) {
+                    grups.add(m.GRUPs.get(t));
+                }
+            }
+        }
+        return RecordSpliterator.of(grups);
+    }
+
     static public ArrayList<Mod> getImportedMods() {
-        ArrayList<Mod> out = new ArrayList<>(activePlugins.size());
-        for (ModListing m : activePlugins) {
+        ArrayList<Mod> out = new ArrayList<>(activePlugins().size());
+        for (ModListing m : activePlugins()) {
             Mod mod = SPDatabase.getMod(m);
             if (mod != null) {
                 out.add(mod);
@@ -168,7 +237,7 @@ public class SPDatabase implements Iterable<Mod> {
      * @return the number of mods
      */
     static public int numMods() {
-        return addedPlugins.size();
+        return addedPlugins().size();
     }
 
     /**
@@ -272,18 +341,101 @@ public class SPDatabase implements Iterable<Mod> {
      */
     static MajorRecord getMajor(FormID query, SPDatabase database, GRUP_TYPE... grup_types) {
         if (query != null && query.getMaster() != null) {
-            Iterator<Mod> revOrder = database.reverseIter();
-            while (revOrder.hasNext()) {
-                Mod next = revOrder.next();
-                MajorRecord ret = next.getMajor(query, grup_types);
-                if (ret != null) {
-                    return ret;
+            ArrayList<IndexEntry> chain = formIndex().get(query);
+            if (chain != null) {
+                for (int i = chain.size() - 1; i >= 0; i--) {
+                    IndexEntry e = chain.get(i);
+                    if (!GRUP_TYPE.internal(e.type) && e.in(grup_types)) {
+                        return e.record;
+                    }
                 }
             }
         }
         return null;
     }
 
+    /**
+     * Querys the Global Database and returns the record that matches the
+     * EDID (case insensitive). The version in the latest mod in the load order
+     * will be returned.
+     *
+     * @param edid       EDID to look for.
+     * @param grup_types GRUPs to look in. (Optional - searches all if left
+     *                   blank)
+     * @return The winning MajorRecord, or null if none were found.
+     */
+    static public MajorRecord getMajor(String edid, GRUP_TYPE... grup_types) {
+        if (edid != null) {
+            ArrayList<IndexEntry> chain = edidIndex().get(edid.toUpperCase());
+            if (chain != null) {
+                for (int i = chain.size() - 1; i >= 0; i--) {
+                    IndexEntry e = chain.get(i);
+                    if (e.in(grup_types)) {
+                        return e.record;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param query FormID to look for.
+     * @return Every version of the record in the database, in load order. The
+     * winning override is last.
+     */
+    static public ArrayList<MajorRecord> getOverrides(FormID query) {
+        ArrayList<MajorRecord> out = new ArrayList<>();
+        ArrayList<IndexEntry> chain = formIndex().get(query);
+        if (chain != null) {
+            for (IndexEntry e : chain) {
+                out.add(e.record);
+            }
+        }
+        return out;
+    }
+
+    static void index(Mod m, GRUP_TYPE type, MajorRecord r) {
+        IndexEntry e = new IndexEntry(m, type, r);
+        insert(formIndex().computeIfAbsent(r.getForm(), k -> new ArrayList<>(1)), e);
+        String edid = r.getEDID();
+        // Most placed references have no EDID; one chain holding them all is useless
+        if (!edid.isEmpty()) {
+            insert(edidIndex().computeIfAbsent(edid.toUpperCase(), k -> new ArrayList<>(1)), e);
+        }
+    }
+
+    static void insert(ArrayList<IndexEntry> chain, IndexEntry e) {
+        int i = chain.size();
+        // Mods are usually added in load order, so this rarely walks back
+        while (i > 0 && chain.get(i - 1).mod != e.mod
+                && chain.get(i - 1).mod.getInfo().compareTo(e.mod.getInfo()) > 0) {
+            i--;
+        }
+        chain.add(i, e);
+    }
+
+    static void unindex(Mod m, MajorRecord r) {
+        ArrayList<IndexEntry> chain = formIndex().get(r.getForm());
+        if (chain != null) {
+            chain.removeIf(e -> e.mod == m && e.record == r);
+            if (chain.isEmpty()) {
+                formIndex().remove(r.getForm());
+            }
+        }
+        String edid = r.getEDID().toUpperCase();
+        if (edid.isEmpty()) {
+            return;
+        }
+        chain = edidIndex().get(edid);
+        if (chain != null) {
+            chain.removeIf(e -> e.mod == m && e.record == r);
+            if (chain.isEmpty()) {
+                edidIndex().remove(edid);
+            }
+        }
+    }
+
     /**
      * Adds a mod to the database. If there is a mod with a matching ModListing
      * already in the database, it will be replaced.
@@ -292,8 +444,16 @@ public class SPDatabase implements Iterable<Mod> {
      */
     static public void add(Mod m) {
         removeMod(m.getInfo());
-        addedPlugins.add(m.getInfo());
-        modLookup.put(m.getInfo(), m);
+        addedPlugins().add(m.getInfo());
+        SPSession.current().invalidateRanks();
+        modLookup().put(m.getInfo(), m);
+        m.inDatabase = true;
+        for (GRUP<?> g : m.GRUPs.values()) {
+            GRUP_TYPE type = g.getContainedType();
+            for (MajorRecord r : g.records()) {
+                index(m, type, r);
+            }
+        }
     }
 
     /**
@@ -314,7 +474,7 @@ public class SPDatabase implements Iterable<Mod> {
      */
     @Override
     public Iterator<Mod> iterator() {
-        return modLookup.values().iterator();
+        return modLookup().values().iterator();
     }
 
     /**
@@ -323,10 +483,35 @@ public class SPDatabase implements Iterable<Mod> {
      */
     public Iterator<Mod> reverseIter() {
         Iterator<Mod> iter = iterator();
-        ArrayList<Mod> outList = new ArrayList<>(modLookup.size());
+        ArrayList<Mod> outList = new ArrayList<>(modLookup().size());
         while (iter.hasNext()) {
             outList.add(0, iter.next());
         }
         return outList.iterator();
     }
+
+    static class IndexEntry {
+
+        final Mod mod;
+        final GRUP_TYPE type;
+        final MajorRecord record;
+
+        IndexEntry(Mod mod, GRUP_TYPE type, MajorRecord record) {
+            this.mod = mod;
+            this.type = type;
+            this.record = record;
+        }
+
+        boolean in(GRUP_TYPE[] grup_types) {
+            if (grup_types.length == 0) {
+                return true;
+            }
+            for (GRUP_TYPE g : grup_types) {
+                if (g == type) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
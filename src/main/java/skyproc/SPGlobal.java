@@ -2,8 +2,7 @@ package skyproc;
 
 import lev.Ln;
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import skyproc.gui.SUMGUI;
@@ -12,8 +11,10 @@ import javax.annotation.PostConstruct;
 import java.io.*;
 import java.nio.file.FileSystems;
 import java.util.ArrayList;
-import java.util.Optional;
-import java.util.function.Consumer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Global variables/settings of SkyProc.
@@ -63,7 +64,7 @@ public class SPGlobal {
     /**
      * Displays information about BSA importing
      */
-    public static boolean debugBSAimport = true;
+    public static boolean debugBSAimport = false;
     /**
      * Displays information about NIF importing
      */
@@ -90,7 +91,6 @@ public class SPGlobal {
     /*
      * Customizable Strings
      */
-    static Mod globalPatchOut;
     static final SPDatabase globalDatabase = new SPDatabase();
     public static boolean testing = false;
     public static boolean streamMode = true;
@@ -98,9 +98,16 @@ public class SPGlobal {
     static boolean mergeMode = false;
     static boolean noModsAfter = true;
     static boolean checkMissingMasters = true;
-    static MajorRecord lastStreamed;
+    static int importThreads = 1;
+    static int grupThreads = 1;
+    static int exportThreads = 1;
+    static int compressThreshold = 0;
+    static boolean memoryMapped = false;
+    static boolean cacheBSAIndices = true;
+    static boolean importSnapshots = false;
+    static long snapshotCacheSize = 1L << 30;
     static File skyProcDocuments;
-    static final ArrayList<ModListing> modsToSkip = new ArrayList<>();
+    static final List<ModListing> modsToSkip = Collections.synchronizedList(new ArrayList<>());
     static final ArrayList<String> modsToSkipStr = new ArrayList<>();
     static final ArrayList<ModListing> modsWhiteList = new ArrayList<>();
     static final ArrayList<String> modsWhiteListStr = new ArrayList<>();
@@ -131,7 +138,7 @@ public class SPGlobal {
      * @return the set Global Patch, or null if one hasn' been set.
      */
     public static Mod getGlobalPatch() {
-        return globalPatchOut;
+        return SPSession.current().globalPatchOut;
     }
 
     /**
@@ -141,11 +148,20 @@ public class SPGlobal {
      * @param patch Mod to set as the global patch.
      */
     public static void setGlobalPatch(Mod patch) {
-        if (globalPatchOut != null) {
-            modsToSkip.remove(globalPatchOut.getInfo());
+        // Skipped by isSkipped() for this session only
+        SPSession.current().globalPatchOut = patch;
+    }
+
+    /**
+     * Loads the consistency data for the global patch, if it hasn't been
+     * loaded yet. Importing mods does this on its own, but a session made by
+     * SPSession.share() imports nothing, so call this once its global patch
+     * is set.
+     */
+    public static void importConsistency() {
+        if (!Consistency.isImported()) {
+            Consistency.importConsistency(true);
         }
-        globalPatchOut = patch;
-        modsToSkip.add(globalPatchOut.getInfo());
     }
 
     /**
@@ -168,7 +184,17 @@ public class SPGlobal {
     }
 
     public static boolean isModToSkip(ModListing m) {
-        return modsToSkip.contains(m) || isModToSkip(m.print());
+        return isSkipped(m) || isModToSkip(m.print());
+    }
+
+    /**
+     * @param m Mod to check.
+     * @return True if the mod is on the skip list or is the current session's
+     * global patch.
+     */
+    static boolean isSkipped(ModListing m) {
+        Mod patch = getGlobalPatch();
+        return (patch != null && patch.getInfo().equals(m)) || modsToSkip.contains(m);
     }
 
     public static boolean isModToSkip(String name) {
@@ -359,6 +385,113 @@ public class SPGlobal {
         streamMode = on;
     }
 
+    /**
+     * BSA folder listings are saved to "SkyProc/BSA Index" in My Documents
+     * after they are first read, and loaded from there on later runs as long
+     * as the BSA's size and modified date haven't changed. On by default.
+     *
+     * @param on
+     */
+    static public void setBSAIndexCache(boolean on) {
+        cacheBSAIndices = on;
+    }
+
+    /**
+     * Plugins are imported from snapshots kept in "SkyProc/Plugin Snapshots"
+     * in My Documents, which hold only the requested GRUPs with their records
+     * already decompressed. A snapshot is made the first time a plugin is
+     * imported for a given set of GRUPs, and reused until the plugin changes
+     * or it is pushed out by setImportSnapshotCacheSize(). Off by default.
+     *
+     * @param on
+     */
+    static public void setImportSnapshots(boolean on) {
+        importSnapshots = on;
+    }
+
+    /**
+     * Caps the space import snapshots take up. Once they go over it, the
+     * snapshots used least recently are removed. 1 GB by default.
+     *
+     * @param bytes Most bytes of snapshots to keep.
+     */
+    static public void setImportSnapshotCacheSize(long bytes) {
+        snapshotCacheSize = bytes;
+    }
+
+    /**
+     * Imported plugins will be memory mapped rather than read through a file
+     * channel. GRUP data and streamed subrecords are then read straight out of
+     * the mapping, which avoids a system call per read.<br> Mapped files stay
+     * open until they are garbage collected.
+     *
+     * @param on
+     */
+    static public void setMemoryMappedImport(boolean on) {
+        memoryMapped = on;
+    }
+
+    /**
+     * Sets how many plugins are parsed at the same time when importing a load
+     * order. Mods are still added to the database in load order, so the
+     * result is the same as a one-at-a-time import.
+     *
+     * @param threads Number of worker threads to parse plugins with. 1 or less
+     *                imports mods one at a time on the calling thread.
+     */
+    static public void setImportThreads(int threads) {
+        importThreads = threads;
+    }
+
+    /**
+     * @return Number of plugins parsed at the same time when importing.
+     */
+    static public int getImportThreads() {
+        return importThreads;
+    }
+
+    /**
+     * Sets how many top level GRUPs of a single plugin are parsed at the same
+     * time. Each GRUP is still parsed in file order, so the records in each
+     * GRUP come out in the same order as a one-at-a-time import.
+     *
+     * @param threads Number of worker threads to parse GRUPs with. 1 or less
+     *                parses GRUPs one at a time.
+     */
+    static public void setGRUPImportThreads(int threads) {
+        grupThreads = threads;
+    }
+
+    /**
+     * @return Number of GRUPs of a plugin parsed at the same time when
+     * importing.
+     */
+    static public int getGRUPImportThreads() {
+        return grupThreads;
+    }
+
+    /**
+     * Sets how many GRUPs are written at the same time when exporting a mod.
+     * GRUPs are still written to the file in order, so the output is the same.
+     * String tabled mods are always exported on one thread.
+     *
+     * @param threads Number of worker threads to export GRUPs with.
+     */
+    static public void setExportThreads(int threads) {
+        exportThreads = threads;
+    }
+
+    /**
+     * Exported records with at least this many bytes of data are zlib
+     * compressed, the way the Creation Kit stores large NPC_, RACE and QUST
+     * records. Compression is done in parallel once each GRUP is written.
+     *
+     * @param bytes Smallest record worth compressing. 0 turns compression off.
+     */
+    static public void setCompressedExport(int bytes) {
+        compressThreshold = bytes;
+    }
+
     /**
      * @param on True if you want the patcher to ignore mods that come after it
      *           in the load order.
@@ -367,6 +500,13 @@ public class SPGlobal {
         noModsAfter = on;
     }
 
+    /**
+     * @return True if mods after the patch in the load order are ignored.
+     */
+    static public boolean getNoModsAfter() {
+        return noModsAfter;
+    }
+
     /**
      * Lets you set the message to display when an error occurs that causes the
      * program to stop prematurely.
@@ -375,18 +515,76 @@ public class SPGlobal {
         SUMGUI.setErrorMessage(message);
     }
 
-    private static final Logger slf4j = LoggerFactory.getLogger(SPGlobal.class);
+    /**
+     * Categories of the built in log functions. Use these, or the enum passed
+     * to logSpecial(), with setLogLevel().
+     */
+    public enum LogCategory {
+
+        /**
+         * logMain() and log()
+         */
+        MAIN,
+        /**
+         * logSync()
+         */
+        SYNC,
+        /**
+         * logMod(), which covers everything printed while importing records
+         */
+        MOD,
+        /**
+         * logBlocked()
+         */
+        BLOCKED
+    }
+
+    static volatile boolean loggingOn = true;
+    static final Map<Enum<?>, Level> logLevels = new ConcurrentHashMap<>();
+
+    /**
+     * @param on False to turn off all logging except errors.
+     */
+    static public void setLogging(boolean on) {
+        loggingOn = on;
+    }
+
+    /**
+     * Sets the lowest level of message a category will log. All messages
+     * outside of errors are logged at INFO, so anything above INFO turns a
+     * category off. Categories default to INFO.
+     *
+     * @param category A LogCategory, or an enum used with logSpecial().
+     * @param level    Lowest level to log.
+     */
+    static public void setLogLevel(Enum<?> category, Level level) {
+        logLevels.put(category, level);
+    }
+
+    /**
+     * Check this before building an expensive log message.
+     *
+     * @param category Category the message would be logged under.
+     * @return True if a message in that category would be logged.
+     */
+    public static boolean logging(Enum<?> category) {
+        return loggingOn && logLevels.getOrDefault(category, Level.INFO).toInt() <= Level.INFO.toInt() && log.isInfoEnabled();
+    }
 
-    private static Optional<Logger> optLog() {
-        return Optional.ofNullable(log);
+    private static void write(Enum<?> category, String pattern, Object... args) {
+        if (logging(category)) {
+            AsyncLog.write(log, Level.INFO, pattern, args);
+        }
     }
 
-    private static void withGlobalLogger(Consumer<Logger> logConsumer) {
-        optLog().ifPresentOrElse(logConsumer, () -> slf4j.warn("No global logger defined"));
+    private static void writeError(String pattern, Object... args) {
+        if (log.isErrorEnabled()) {
+            AsyncLog.write(log, Level.ERROR, pattern, args);
+        }
     }
 
     static void logSync(String header, String... print) {
-        withGlobalLogger(l -> l.info("[{}] {}", header, print));
+        write(LogCategory.SYNC, "[{}] {}", header, print);
     }
 
     /**
@@ -394,21 +592,21 @@ public class SPGlobal {
      * program "milestones".
      */
     public static void logMain(String header, String... print) {
-        withGlobalLogger(l -> l.info("[{}] {}", header, print));
+        write(LogCategory.MAIN, "[{}] {}", header, print);
     }
 
     /**
      * Logs a specific record as blocked in the "Blocked Records.txt" log.
      */
     public static void logBlocked(String header, String reason, MajorRecord m) {
-        withGlobalLogger(l -> l.info("[{}] Blocked {} due to: {}", header, m, reason));
+        write(LogCategory.BLOCKED, "[{}] Blocked {} due to: {}", header, m, reason);
     }
 
     /**
      * @return True if the logger is currently on.
      */
     public static boolean logging() {
-        return log != null;
+        return loggingOn && log != null;
     }
 
     /**
@@ -416,7 +614,7 @@ public class SPGlobal {
      * asynchronous log for easy location in either place.
      */
     public static void logError(String header, String... print) {
-        withGlobalLogger(l -> l.error("[{}] {}", header, print));
+        writeError("[{}] {}", header, print);
     }
 
     /**
@@ -425,7 +623,7 @@ public class SPGlobal {
      * @param e Exception to print.
      */
     public static void logException(Throwable e) {
-        withGlobalLogger(l -> l.error("EXCEPTION due to: {}", e.getMessage()));
+        writeError("EXCEPTION due to: {}", e.getMessage());
     }
 
     /**
@@ -433,18 +631,18 @@ public class SPGlobal {
      * newSpecialLog().
      */
     public static void logSpecial(Enum<?> e, String header, String... print) {
-        withGlobalLogger(l -> l.info("[{} {}] {}", e, header, print));
+        write(e, "[{} {}] {}", e, header, print);
     }
 
     /**
      * Prints a message to the asynchronous log.
      */
     public static void log(String header, String... print) {
-        withGlobalLogger(l -> l.info("[{}] {}", header, print));
+        write(LogCategory.MAIN, "[{}] {}", header, print);
     }
 
     public static void logMod(Mod srcMod, String header, String... data) {
-        log.info("[{}] [{}] {}", srcMod.getName(), header, data);
+        write(LogCategory.MOD, "[{}] [{}] {}", srcMod.getName(), header, data);
     }
 
     static void reset() {
@@ -14,7 +14,9 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.zip.DataFormatException;
 
 /**
@@ -65,7 +67,7 @@ public class SPImporter {
      * @see SPGlobal
      */
     static public ArrayList<ModListing> getActiveModList() throws java.io.IOException {
-        if (SPDatabase.activePlugins.isEmpty()) {
+        if (SPDatabase.activePlugins().isEmpty()) {
             String header = "IMPORT MODS";
             BufferedReader ModFile;
             String dataFolder = SPGlobal.getPluginsTxt();
@@ -123,14 +125,15 @@ public class SPImporter {
                     line = ModFile.readLine();
                 }
 
-                SPDatabase.activePlugins = sortModListings(lines);
+                SPSession.current().activePlugins = sortModListings(lines);
+                SPSession.current().invalidateRanks();
 
             } catch (IOException e) {
                 SPGlobal.logException(e);
                 throw e;
             }
         }
-        return SPDatabase.activePlugins;
+        return SPDatabase.activePlugins();
     }
 
     /**
@@ -152,7 +155,7 @@ public class SPImporter {
             for (File f : files) {
                 String name = f.getName().toUpperCase();
                 if (name.contains(".ESP") || name.contains(".ESM")) {
-                    if (!SPGlobal.modsToSkip.contains(new ModListing(f.getName()))) {
+                    if (!SPGlobal.isSkipped(new ModListing(f.getName()))) {
                         out.add(f.getName());
                     } else if (SPGlobal.logging()) {
                         SPGlobal.logSync(header, "Mod was on the list to skip: " + name);
@@ -438,6 +441,10 @@ public class SPImporter {
             }
 
         }
+        if (SPGlobal.importThreads > 1 && mods.size() > 1) {
+            return importModsParallel(mods, path, grup_targets);
+        }
+
         String header = "Import Mods";
 
         Set<Mod> outSet = new TreeSet<>();
@@ -447,18 +454,11 @@ public class SPImporter {
         for (int i = 0; i < mods.size(); i++) {
             String mod = mods.get(i).print();
             SPProgressBarPlug.setStatusNumbered(genStatus(mods.get(i)));
-            if (!SPGlobal.modsToSkip.contains(new ModListing(mod))) {
+            if (!SPGlobal.isSkipped(new ModListing(mod))) {
                 try {
                     outSet.add(importMod(new ModListing(mod), i, path, true, grup_targets));
                 } catch (BadMod ex) {
-                    SPGlobal.logError(header, "Exception occured while importing mod : " + mod);
-                    SPGlobal.logError(header, "  Message: " + ex);
-                    SPGlobal.logError(header, "  Stack: ");
-                    for (StackTraceElement s : ex.getStackTrace()) {
-                        SPGlobal.logError(header, "  " + s.toString());
-                    }
-                    SPGlobal.logError(header, "Skipping a bad mod: " + mod);
-                    SPGlobal.logError(header, "  " + ex);
+                    logBadMod(header, mod, ex);
                 } //catch (Exception e) {
 //                    SPGlobal.logError(header, "Exception occured while importing mod : " + mod);
 //                    SPGlobal.logError(header, "  Message: " + e);
@@ -480,6 +480,99 @@ public class SPImporter {
         return outSet;
     }
 
+    /**
+     * Parses the mods on a pool of SPGlobal.importThreads workers, and then
+     * adds them to the database one by one in load order, so that the
+     * database ends up the same as it would after a sequential import.
+     */
+    static Set<Mod> importModsParallel(final ArrayList<ModListing> mods, final String path, final GRUP_TYPE... grup_targets) throws MissingMaster {
+        String header = "Import Mods";
+        if (SPGlobal.logging()) {
+            SPGlobal.logMain(header, "Importing with " + SPGlobal.importThreads + " threads.");
+        }
+
+        // Shared state that would otherwise be lazily set up by the first worker
+        if (!Consistency.isImported()) {
+            Consistency.importConsistency(true);
+        }
+        BSA.getPluginBSAs();
+        BSA.getResourceBSAa();
+
+        Set<Mod> outSet = new TreeSet<>();
+        SPProgressBarPlug.setMax(mods.size(), "Importing plugins.");
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(SPGlobal.importThreads, mods.size()), new ImportThreadFactory());
+        ArrayList<Future<Mod>> parsed = new ArrayList<>(mods.size());
+        try {
+            for (ModListing m : mods) {
+                final ModListing listing = new ModListing(m.print());
+                if (SPGlobal.isSkipped(listing)) {
+                    parsed.add(null);
+                } else {
+                    parsed.add(pool.submit(SPSession.inCurrent(() -> parseMod(listing, path, grup_targets))));
+                }
+            }
+            pool.shutdown();
+
+            for (int i = 0; i < mods.size(); i++) {
+                String mod = mods.get(i).print();
+                SPProgressBarPlug.setStatusNumbered(genStatus(mods.get(i)));
+                Future<Mod> next = parsed.get(i);
+                if (next == null) {
+                    SPProgressBarPlug.setStatusNumbered(genStatus(mods.get(i)) + ": Skipped!");
+                } else {
+                    try {
+                        Mod plugin = next.get();
+                        if (SPGlobal.checkMissingMasters) {
+                            checkMissingMasters(plugin);
+                        }
+                        plugin.commitHistory();
+                        SPDatabase.add(plugin);
+                        outSet.add(plugin);
+                        SPProgressBarPlug.setStatusNumbered(genStatus(mods.get(i)) + ": Done");
+                    } catch (ExecutionException ex) {
+                        logImportException(path + mod, ex.getCause());
+                        logBadMod(header, mod, new BadMod("Ran into an exception, check SPGlobal.logs for more details."));
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        SPGlobal.logException(ex);
+                        break;
+                    }
+                }
+                SPProgressBarPlug.incrementBar();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (SPGlobal.logging()) {
+            SPGlobal.logMain(header, "Done Importing Mods.");
+        }
+        System.gc();
+        return outSet;
+    }
+
+    static void logBadMod(String header, String mod, BadMod ex) {
+        SPGlobal.logError(header, "Exception occured while importing mod : " + mod);
+        SPGlobal.logError(header, "  Message: " + ex);
+        SPGlobal.logError(header, "  Stack: ");
+        for (StackTraceElement s : ex.getStackTrace()) {
+            SPGlobal.logError(header, "  " + s.toString());
+        }
+        SPGlobal.logError(header, "Skipping a bad mod: " + mod);
+        SPGlobal.logError(header, "  " + ex);
+    }
+
+    static void logImportException(String path, Throwable e) {
+        SPGlobal.logError(header, "Exception occurred while importing mod : " + path);
+        SPGlobal.logError(header, "  Message: " + e);
+        SPGlobal.logError(header, "  Stack: ");
+        for (StackTraceElement s : e.getStackTrace()) {
+            SPGlobal.logError(header, "  " + s.toString());
+        }
+        SPGlobal.logException(e);
+    }
+
     /**
      * Looks for a mod matching the ModListing inside the given path. If
      * properly located, it imports only GRUPS specified input the parameter.
@@ -520,52 +613,174 @@ public class SPImporter {
             Consistency.importConsistency(true);
         }
         try {
-            RecordFileChannel input = new RecordFileChannel(path + listing.print());
+            RecordFileChannel input = openPlugin(listing, path, grup_targets);
             Mod plugin = new Mod(listing, extractHeaderInfo(input));
             SPGlobal.logMod(plugin, header, "Opened filestream to mod: " + listing.print());
             if (SPGlobal.checkMissingMasters) {
                 checkMissingMasters(plugin);
             }
-            if (SPGlobal.streamMode) {
-                plugin.input = input;
+            parseMod(plugin, input, true, grup_targets);
+
+            if (addtoDb) {
+                SPDatabase.add(plugin);
             }
+            SPProgressBarPlug.setStatusNumbered(genStatus(listing) + ": Done");
 
-            if (plugin.isFlag(Mod.Mod_Flags.STRING_TABLED)) {
-                importStringLocations(plugin);
-                plugin.openStringStreams();
+            return plugin;
+        } catch (MissingMaster m) {
+            throw m;
+        } catch (Exception e) {
+            logImportException(path, e);
+            throw new BadMod("Ran into an exception, check SPGlobal.logs for more details.");
+        }
+    }
+
+    /**
+     * Opens and parses a mod on its own file channel and string streams,
+     * without adding it to the database. Used by the import workers.
+     */
+    static Mod parseMod(ModListing listing, String path, GRUP_TYPE... grup_targets) throws Exception {
+        RecordFileChannel input = openPlugin(listing, path, grup_targets);
+        Mod plugin = new Mod(listing, extractHeaderInfo(input));
+        SPGlobal.logMod(plugin, header, "Opened filestream to mod: " + listing.print());
+        ArrayList<MajorRecord> history = new ArrayList<>();
+        MajorRecord.historyBuffer.set(history);
+        try {
+            parseMod(plugin, input, false, grup_targets);
+        } finally {
+            MajorRecord.historyBuffer.remove();
+        }
+        plugin.pendingHistory = history;
+        return plugin;
+    }
+
+    /**
+     * Opens a plugin for import, or its snapshot if SPGlobal.setImportSnapshots()
+     * is on.
+     */
+    static RecordFileChannel openPlugin(ModListing listing, String path, GRUP_TYPE... grup_targets) {
+        if (SPGlobal.importSnapshots) {
+            File snapshot = PluginSnapshot.get(new File(path + listing.print()), grup_targets);
+            if (snapshot != null) {
+                return RecordFileChannel.open(snapshot.getPath());
             }
+        }
+        return RecordFileChannel.open(path + listing.print());
+    }
+
+    static void parseMod(Mod plugin, RecordFileChannel input, boolean showProgress, GRUP_TYPE... grup_targets) throws Exception {
+        if (SPGlobal.streamMode) {
+            plugin.input = input;
+        }
 
-            GRUPIterator iter = new GRUPIterator(grup_targets, input);
+        if (plugin.isFlag(Mod.Mod_Flags.STRING_TABLED)) {
+            importStringLocations(plugin);
+        }
+
+        GRUPIterator iter = new GRUPIterator(grup_targets, input);
+        if (SPGlobal.grupThreads > 1) {
+            parseGRUPsParallel(plugin, iter);
+        } else {
             while (iter.hasNext()) {
                 String result = iter.loading();
-                SPProgressBarPlug.setStatusNumbered(genStatus(listing) + ": " + result);
+                if (showProgress) {
+                    SPProgressBarPlug.setStatusNumbered(genStatus(plugin.getInfo()) + ": " + result);
+                }
                 SPGlobal.logMod(plugin, header, "================== Loading in GRUP " + result + ": ", plugin.getName(), " ===================");
                 plugin.parseData(result, iter.next());
             }
+        }
 
-            if (addtoDb) {
-                SPDatabase.add(plugin);
-            }
+        if (!SPGlobal.streamMode) {
+            input.close();
+        }
+    }
 
-            if (!SPGlobal.streamMode) {
-                input.close();
-            }
-            SPProgressBarPlug.setStatusNumbered(genStatus(listing) + ": Done");
+    static private ExecutorService grupPool;
+    static private int grupPoolSize;
 
-            return plugin;
-        } catch (MissingMaster m) {
-            throw m;
-        } catch (Exception e) {
+    /**
+     * @return The pool GRUPs are parsed on, shared by every import and
+     * replaced only when SPGlobal.setGRUPImportThreads() changes its size.
+     */
+    static synchronized ExecutorService grupPool() {
+        if (grupPool == null || grupPoolSize != SPGlobal.grupThreads) {
+            if (grupPool != null) {
+                grupPool.shutdown();
+            }
+            grupPoolSize = SPGlobal.grupThreads;
+            grupPool = Executors.newFixedThreadPool(grupPoolSize, new ImportThreadFactory());
+        }
+        return grupPool;
+    }
 
-            SPGlobal.logError(header, "Exception occurred while importing mod : " + path);
-            SPGlobal.logError(header, "  Message: " + e);
-            SPGlobal.logError(header, "  Stack: ");
-            for (StackTraceElement s : e.getStackTrace()) {
-                SPGlobal.logError(header, "  " + s.toString());
+    /**
+     * Top level GRUPs are length prefixed, so each one is read into its own
+     * buffer in file order and handed to a worker to be parsed into its GRUP
+     * object. Only a couple of GRUPs per worker are read ahead, so a large
+     * plugin isn't held in memory all at once. Record history is collected
+     * per GRUP and added in file order once every GRUP is done.
+     */
+    static void parseGRUPsParallel(final Mod plugin, GRUPIterator iter) throws Exception {
+        ExecutorService pool = grupPool();
+        final Semaphore ahead = new Semaphore(SPGlobal.grupThreads * 2);
+        ArrayList<Future<ArrayList<MajorRecord>>> parsed = new ArrayList<>();
+        boolean done = false;
+        try {
+            while (iter.hasNext()) {
+                final String result = iter.loading();
+                ahead.acquire();
+                final RecordShrinkArray data;
+                try {
+                    data = iter.next();
+                } catch (RuntimeException ex) {
+                    ahead.release();
+                    throw ex;
+                }
+                parsed.add(pool.submit(SPSession.inCurrent(() -> {
+                    try {
+                        SPGlobal.logMod(plugin, header, "================== Loading in GRUP " + result + ": ", plugin.getName(), " ===================");
+                        ArrayList<MajorRecord> history = new ArrayList<>();
+                        MajorRecord.historyBuffer.set(history);
+                        try {
+                            plugin.parseData(result, data);
+                        } finally {
+                            MajorRecord.historyBuffer.remove();
+                        }
+                        return history;
+                    } finally {
+                        ahead.release();
+                    }
+                })));
             }
 
-            SPGlobal.logException(e);
-            throw new BadMod("Ran into an exception, check SPGlobal.logs for more details.");
+            ArrayList<MajorRecord> outer = MajorRecord.historyBuffer.get();
+            for (Future<ArrayList<MajorRecord>> next : parsed) {
+                ArrayList<MajorRecord> history;
+                try {
+                    history = next.get();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof Exception) {
+                        throw (Exception) ex.getCause();
+                    }
+                    throw ex;
+                }
+                if (outer != null) {
+                    outer.addAll(history);
+                } else {
+                    for (MajorRecord m : history) {
+                        MajorRecord.addToHistory(m);
+                    }
+                }
+            }
+            done = true;
+        } finally {
+            if (!done) {
+                // The pool is shared, so only this plugin's GRUPs are stopped
+                for (Future<ArrayList<MajorRecord>> next : parsed) {
+                    next.cancel(true);
+                }
+            }
         }
     }
 
@@ -661,9 +876,7 @@ public class SPImporter {
         ArrayList<Language> languageList = new ArrayList<>();
         languageList.add(SPGlobal.language);
         languageList.addAll(Arrays.asList(Language.values()));
-        LShrinkArray in = null;
-        int numRecords = 0;
-        int recordsSize = 0;
+        StringTable table = null;
 
         for (Language l : languageList) {
             String strings = getStringFilePath(plugin, l, file);
@@ -672,70 +885,47 @@ public class SPImporter {
             // Open file
             if (stringsFile.isFile()) {
                 // loose strings file
-                LInChannel istream = new LInChannel(stringsFile);
-                // Read header
-                numRecords = istream.extractInt(0, 4);
-                recordsSize = numRecords * 8 + 8;
-                in = new LShrinkArray(istream.extractByteBuffer(4, recordsSize));
-//            } else if (BSA.hasBSA(plugin)) {
-//                //In the plugin's BSA
-//                BSA bsa = BSA.getBSA(plugin);
-//                if (bsa != null) {
-//                    bsa.loadFolders();
-//                    if (bsa.hasFile(strings)) {
-//
-//                        in = bsa.getFile(strings);
-//                        numRecords = in.extractInt(4);
-//                        recordsSize = numRecords * 8 + 8;
-//                        //Skip bytes 4-8
-//                        in.skip(4);
-//                    }
-//                }
+                try {
+                    table = StringTable.read(file, stringsFile, SPGlobal.memoryMapped);
+                } catch (IOException ex) {
+                    SPGlobal.logException(ex);
+                }
             } else {
                 //check for plugin loaded BSA has strings file
+                ByteBuffer data = null;
                 for (BSA theBSA : BSA.getPluginBSAs()) {
                     theBSA.loadFolders();
-                    if (!theBSA.hasFile(strings)) {
-                        continue;
+                    if (theBSA.hasFile(strings)) {
+                        data = theBSA.getFileBuffer(strings);
+                        break;
                     }
-                    in = theBSA.getFile(strings);
-                    numRecords = in.extractInt(4);
-                    recordsSize = numRecords * 8 + 8;
-                    //Skip bytes 4-8
-                    in.skip(4);
-                    break;
                 }
-                if (in == null) {
+                if (data == null) {
                     // check for resource loaded BSA with strings file
                     for (BSA theBSA : BSA.getResourceBSAa()) {
                         theBSA.loadFolders();
-                        if (!theBSA.hasFile(strings)) {
-                            continue;
+                        if (theBSA.hasFile(strings)) {
+                            data = theBSA.getFileBuffer(strings);
+                            break;
                         }
-                        in = theBSA.getFile(strings);
-                        numRecords = in.extractInt(4);
-                        recordsSize = numRecords * 8 + 8;
-                        //Skip bytes 4-8
-                        in.skip(4);
-                        break;
                     }
                 }
+                if (data != null) {
+                    table = new StringTable(file, data);
+                }
             }
-            // Found strings, read entry pairs
-            if (in != null) {
+            // Found strings
+            if (table != null) {
                 plugin.language = l;
-                for (int i = 0; i < numRecords; i++) {
-                    plugin.stringLocations.get(file).put(in.extractInt(4),
-                            in.extractInt(4) + recordsSize);
-                }
+                plugin.stringTables.put(file, table);
                 break;
             }
         }
 
-        if (in == null) {
+        if (table == null) {
             SPGlobal.logError(header, plugin + " did not have Strings files (loose or in BSA).");
         } else {
-            SPGlobal.logMod(plugin, header, "Loaded " + file + " from language: " + plugin.language);
+            SPGlobal.logMod(plugin, header, "Loaded " + table.size() + " " + file + " from language: " + plugin.language);
         }
     }
 
@@ -768,8 +958,48 @@ public class SPImporter {
         return "NULL";
     }
 
+    /**
+     * Walks every top level GRUP after the header, counting the records in
+     * each from their headers alone.
+     *
+     * @param in Plugin positioned after its TES4 header.
+     * @return Record counts by GRUP type, in file order.
+     */
+    static LinkedHashMap<String, Integer> scanRecordCounts(LInChannel in) {
+        ArrayList<String> targets = new ArrayList<>();
+        for (GRUP_TYPE g : GRUP_TYPE.values()) {
+            targets.add(g.toString());
+        }
+        LinkedHashMap<String, Integer> out = new LinkedHashMap<>();
+        String type;
+        while (!"NULL".equals(type = scanToGRUPStart(in, targets))) {
+            ByteBuffer grup = in.extractByteBuffer(0, getGRUPsize(in)).order(ByteOrder.LITTLE_ENDIAN);
+            int start = grup.position();
+            int end = grup.limit();
+            int count = 0;
+            // Nested GRUP headers are stepped over, their contents follow directly
+            for (int pos = start + RecordCompression.headerSize; pos < end; ) {
+                if (RecordCompression.isGRUP(grup, pos)) {
+                    pos += RecordCompression.headerSize;
+                } else {
+                    count++;
+                    pos += RecordCompression.headerSize + grup.getInt(pos + 4);
+                }
+            }
+            out.merge(type, count, Integer::sum);
+        }
+        return out;
+    }
+
     static RecordShrinkArray extractGRUPData(LInChannel in) {
-        return new RecordShrinkArray(in, getGRUPsize(in));
+        int size = getGRUPsize(in);
+        if (in instanceof MappedRecordFileChannel) {
+            // Reads a view of the GRUP, leaving the channel past it as the
+            // copy below does
+            long pos = in.pos();
+            return new RecordShrinkArray(in.extractByteBuffer(0, size), pos);
+        }
+        return new RecordShrinkArray(in, size);
     }
 
     static int getGRUPsize(LInChannel in) {
@@ -782,6 +1012,18 @@ public class SPImporter {
         return "Importing " + mod.print();
     }
 
+    private static class ImportThreadFactory implements ThreadFactory {
+
+        int count = 0;
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "SkyProc Import " + count++);
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
     private static class StartImportThread implements Runnable {
 
         @Override
@@ -953,7 +1195,7 @@ public class SPImporter {
                     if (flags.get(MajorFlags.Compressed.value)) {
                         uncompressed = new LShrinkArray(input.extract(size));
                         try {
-                            uncompressed = uncompressed.correctForCompression();
+                            uncompressed = RecordCompression.inflate(uncompressed);
                         } catch (DataFormatException ex) {
                             SPGlobal.logException(ex);
                         }
@@ -0,0 +1,219 @@
+package skyproc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+/**
+ * Owns everything SkyProc keeps about one load order: the imported mods and
+ * their indices, the global patch, consistency data, the plugins' BSAs and
+ * the record history built up while parsing.<br><br>
+ * SPDatabase, SPGlobal.getGlobalPatch() and the rest of the static API act on
+ * the session bound to the calling thread, or the global session if none is.
+ * Running work for separate load orders inside their own sessions lets them
+ * be imported and patched side by side in one JVM. SkyProc's own import and
+ * export workers run in the session that started them; other threads a
+ * patcher starts need to call run() themselves.
+ *
+ * @author Justin Swanson
+ */
+public class SPSession {
+
+    static final SPSession global = new SPSession();
+    static final ThreadLocal<SPSession> bound = new ThreadLocal<>();
+    // Database
+    ArrayList<ModListing> activePlugins = new ArrayList<>();
+    final ArrayList<ModListing> addedPlugins = new ArrayList<>();
+    final Map<ModListing, Mod> modLookup = new TreeMap<>();
+    final FormIDMap<ArrayList<SPDatabase.IndexEntry>> formIndex = new FormIDMap<>();
+    final Map<String, ArrayList<SPDatabase.IndexEntry>> edidIndex = new HashMap<>();
+    // Positions in the plugin lists, rebuilt after either list changes
+    volatile int rankVersion = 0;
+    Map<ModListing, Integer> activeRanks;
+    Map<ModListing, Integer> addedRanks;
+    // Patch
+    Mod globalPatchOut;
+    // Consistency
+    final Consistency.ConsistencyVersion consistency = new Consistency.ConsistencyV4();
+    boolean consistencyImported = false;
+    boolean consistencyCleaned = false;
+    FormIDAllocator allocator;
+    Mod allocatorMod;
+    // Records
+    final FormIDMap<ArrayList<MajorRecord>> recordHistory = new FormIDMap<>();
+    final Map<FormID, MajorRecord> deepSubrecordCopyDB = new HashMap<>();
+    MajorRecord lastStreamed;
+    // BSAs of active plugins, in load order. The BSAs themselves are shared
+    // through BSA.bsaLookup.
+    final Map<ModListing, BSA> pluginBSAs = new TreeMap<>();
+    boolean pluginBSAsLoaded = false;
+
+    SPSession() {
+    }
+
+    /**
+     * @return A new, empty session.
+     */
+    static public SPSession create() {
+        return new SPSession();
+    }
+
+    /**
+     * @return The session static calls from this thread act on.
+     */
+    static public SPSession current() {
+        SPSession out = bound.get();
+        return out != null ? out : global;
+    }
+
+    /**
+     * @return The session used by threads that haven't bound one.
+     */
+    static public SPSession getGlobal() {
+        return global;
+    }
+
+    /**
+     * Runs the task on this thread with this session bound, then restores
+     * whichever session was bound before.
+     *
+     * @param task Work to run.
+     * @param <T>  Type of the result.
+     * @return Result of the task.
+     * @throws Exception Anything the task throws.
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        SPSession prev = bound.get();
+        bound.set(this);
+        try {
+            return task.call();
+        } finally {
+            if (prev == null) {
+                bound.remove();
+            } else {
+                bound.set(prev);
+            }
+        }
+    }
+
+    /**
+     * Runs the task on this thread with this session bound, then restores
+     * whichever session was bound before.
+     *
+     * @param task Work to run.
+     */
+    public void run(Runnable task) {
+        SPSession prev = bound.get();
+        bound.set(this);
+        try {
+            task.run();
+        } finally {
+            if (prev == null) {
+                bound.remove();
+            } else {
+                bound.set(prev);
+            }
+        }
+    }
+
+    /**
+     * @param task Work to hand to another thread.
+     * @param <T>  Type of the result.
+     * @return The task wrapped to run in the session current on this thread.
+     */
+    static <T> Callable<T> inCurrent(Callable<T> task) {
+        SPSession session = current();
+        return () -> session.call(task);
+    }
+
+    /**
+     * Starts a session on the mods this one has imported, so another patch
+     * can be built from them without importing them again. The new session
+     * has its own index, global patch and consistency data, and its own
+     * copies of the mods. Records are copied up front, but each subrecord is
+     * only copied when first touched, so changes made in either session stay
+     * out of the other.
+     *
+     * @param until Plugins from this one on are left out, the same as if it
+     *              were the global patch. Null to keep every plugin.
+     * @return A new session holding this session's imported mods.
+     */
+    public SPSession share(ModListing until) {
+        SPSession out = new SPSession();
+        ArrayList<Mod> mods = new ArrayList<>();
+        // Looked up while bound, as the lookup is ordered by this session's ranks
+        run(() -> {
+            for (ModListing listing : activePlugins) {
+                if (listing.equals(until)) {
+                    break;
+                }
+                out.activePlugins.add(listing);
+                Mod m = modLookup.get(listing);
+                if (m != null) {
+                    mods.add(m.duplicate());
+                }
+            }
+        });
+        out.run(() -> {
+            for (Mod m : mods) {
+                SPDatabase.add(m);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Adds a copy of a mod to this session, made the same way as the copies
+     * share() makes.
+     *
+     * @param m Mod to copy in.
+     */
+    public void addCopy(Mod m) {
+        Mod copy = m.duplicate();
+        run(() -> SPDatabase.add(copy));
+    }
+
+    /**
+     * Must be called after activePlugins or addedPlugins change, so cached
+     * ModListing ranks are recomputed.
+     */
+    synchronized void invalidateRanks() {
+        activeRanks = null;
+        addedRanks = null;
+        rankVersion++;
+    }
+
+    synchronized ModListing.Rank rank(ModListing listing) {
+        if (activeRanks == null) {
+            activeRanks = ranks(activePlugins);
+            addedRanks = ranks(addedPlugins);
+        }
+        return new ModListing.Rank(this, rankVersion,
+                activeRanks.getOrDefault(listing, -1), addedRanks.getOrDefault(listing, -1));
+    }
+
+    static Map<ModListing, Integer> ranks(ArrayList<ModListing> list) {
+        Map<ModListing, Integer> out = new HashMap<>(list.size() * 2);
+        for (int i = 0; i < list.size(); i++) {
+            out.putIfAbsent(list.get(i), i);
+        }
+        return out;
+    }
+
+    /**
+     * Drops every mod, index, plugin BSA and piece of consistency and history
+     * data held by the session.
+     */
+    public void clear() {
+        run(SPGlobal::reset);
+        recordHistory.clear();
+        deepSubrecordCopyDB.clear();
+        lastStreamed = null;
+        synchronized (BSA.class) {
+            pluginBSAs.clear();
+            pluginBSAsLoaded = false;
+        }
+    }
+}
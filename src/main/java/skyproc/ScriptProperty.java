@@ -113,7 +113,9 @@ class ScriptProperty extends Record implements Serializable {
         name.set(in.extractString(in.extractInt(2)));
         ScriptPropertyType type = ScriptPropertyType.value(in.extractInt(1));
         unknown = in.extractInt(1);
-        logMod(srcMod, "VMAD", "    Property " + name + " with type " + type + ", unknown: " + unknown);
+        if (loggingMod()) {
+            logMod(srcMod, "VMAD", "    Property " + name + " with type " + type + ", unknown: " + unknown);
+        }
         switch (type) {
             case FormID:
                 data = new FormIDData();
@@ -155,7 +157,9 @@ class ScriptProperty extends Record implements Serializable {
         if (data != null) {
             data.parseData(in, srcMod);
         }
-        logMod(srcMod, "VMAD", "      Data: " + data.print());
+        if (loggingMod()) {
+            logMod(srcMod, "VMAD", "      Data: " + data.print());
+        }
     }
 
     @Override
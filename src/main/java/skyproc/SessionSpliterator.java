@@ -0,0 +1,79 @@
+package skyproc;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Wraps a spliterator so that parallel stream tasks run in the session that
+ * was current when the stream was made. Fork/join pool threads have no
+ * session bound, and would otherwise act on the global one.
+ *
+ * @param <T> Type of element.
+ * @author Justin Swanson
+ */
+class SessionSpliterator<T> implements Spliterator<T> {
+
+    final Spliterator<T> inner;
+    final SPSession session;
+
+    SessionSpliterator(Spliterator<T> inner) {
+        this(inner, SPSession.current());
+    }
+
+    SessionSpliterator(Spliterator<T> inner, SPSession session) {
+        this.inner = inner;
+        this.session = session;
+    }
+
+    SPSession bind() {
+        SPSession prev = SPSession.bound.get();
+        if (prev != session) {
+            SPSession.bound.set(session);
+        }
+        return prev;
+    }
+
+    void restore(SPSession prev) {
+        if (prev == null) {
+            SPSession.bound.remove();
+        } else if (prev != session) {
+            SPSession.bound.set(prev);
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        SPSession prev = bind();
+        try {
+            return inner.tryAdvance(action);
+        } finally {
+            restore(prev);
+        }
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        SPSession prev = bind();
+        try {
+            inner.forEachRemaining(action);
+        } finally {
+            restore(prev);
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        Spliterator<T> prefix = inner.trySplit();
+        return prefix == null ? null : new SessionSpliterator<>(prefix, session);
+    }
+
+    @Override
+    public long estimateSize() {
+        return inner.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return inner.characteristics();
+    }
+}
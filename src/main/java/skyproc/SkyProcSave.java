@@ -2,12 +2,41 @@ package skyproc;
 
 import lev.gui.LSaveFile;
 
+import java.io.File;
+
 /**
  * @author Justin Swanson
  */
 public abstract class SkyProcSave extends LSaveFile {
 
+    // Set while SUM loads patchers, which run from their own folders
+    static final ThreadLocal<File> folder = new ThreadLocal<>();
+
     public SkyProcSave() {
-        super(SPGlobal.pathToInternalFiles + "/Savefile");
+        super(getPath());
+    }
+
+    static String getPath() {
+        String path = SPGlobal.pathToInternalFiles + "/Savefile";
+        File dir = folder.get();
+        return dir == null ? path : new File(dir, path).getPath();
+    }
+
+    /**
+     * Runs the task with any saves it creates kept relative to dir rather than
+     * the working directory. SUM loads patchers this way, so patchers it runs
+     * inside its own program still find their settings.
+     *
+     * @param dir  Folder the program creating the saves runs from.
+     * @param task Work that may create saves.
+     */
+    static public void createIn(File dir, Runnable task) {
+        File prev = folder.get();
+        folder.set(dir);
+        try {
+            task.run();
+        } finally {
+            folder.set(prev);
+        }
     }
 }
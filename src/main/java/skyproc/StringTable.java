@@ -0,0 +1,164 @@
+package skyproc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A STRINGS, DLSTRINGS or ILSTRINGS file. The directory is indexed into
+ * primitive arrays, and strings are only decoded from the raw data when
+ * asked for, with a small cache in front. Reads never move a shared position,
+ * so lookups can be made from several threads at once.
+ *
+ * @author Justin Swanson
+ */
+class StringTable {
+
+    static final int cacheSize = 1 << 12;
+    final SubStringPointer.Files file;
+    final ByteBuffer data;
+    final int dataStart;
+    // Open addressing over string IDs; offsets are relative to dataStart
+    final int[] ids;
+    final int[] offsets;
+    final boolean[] used;
+    final int size;
+    // Direct mapped, entries are replaced wholesale so racing threads are harmless
+    final Cached[] cache = new Cached[cacheSize];
+
+    static class Cached {
+
+        final int id;
+        final String string;
+
+        Cached(int id, String string) {
+            this.id = id;
+            this.string = string;
+        }
+    }
+
+    /**
+     * @param file Type of strings file.
+     * @param data Whole contents of the file.
+     */
+    StringTable(SubStringPointer.Files file, ByteBuffer data) {
+        this.file = file;
+        this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+        int start = data.position();
+        size = data.getInt(start);
+        dataStart = start + 8 + size * 8;
+        int capacity = 16;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        ids = new int[capacity];
+        offsets = new int[capacity];
+        used = new boolean[capacity];
+        for (int i = 0; i < size; i++) {
+            int entry = start + 8 + i * 8;
+            int id = data.getInt(entry);
+            int slot = slot(id);
+            while (used[slot] && ids[slot] != id) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            used[slot] = true;
+            ids[slot] = id;
+            offsets[slot] = data.getInt(entry + 4);
+        }
+    }
+
+    /**
+     * @param file      Type of strings file.
+     * @param f         File on disk to read.
+     * @param mapped    Whether to map the file rather than read it into memory.
+     * @return The loaded table.
+     * @throws IOException
+     */
+    static StringTable read(SubStringPointer.Files file, File f, boolean mapped) throws IOException {
+        try (FileChannel in = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer data;
+            if (mapped) {
+                data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            } else {
+                data = ByteBuffer.allocate((int) in.size());
+                while (data.hasRemaining()) {
+                    if (in.read(data, data.position()) < 0) {
+                        throw new IOException("Unexpected end of " + f);
+                    }
+                }
+                data.position(0);
+            }
+            return new StringTable(file, data);
+        }
+    }
+
+    int slot(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (ids.length - 1);
+    }
+
+    int find(int id) {
+        int slot = slot(id);
+        while (used[slot]) {
+            if (ids[slot] == id) {
+                return slot;
+            }
+            slot = (slot + 1) & (ids.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @param id String ID from a pointer.
+     * @return True if the table has a string with that ID.
+     */
+    boolean contains(int id) {
+        return find(id) != -1;
+    }
+
+    /**
+     * @param id String ID from a pointer.
+     * @return The string, or null if the table has no such ID.
+     */
+    String get(int id) {
+        Cached cached = cache[id & (cacheSize - 1)];
+        if (cached != null && cached.id == id) {
+            return cached.string;
+        }
+        int slot = find(id);
+        if (slot == -1) {
+            return null;
+        }
+        String out = decode(dataStart + offsets[slot]);
+        cache[id & (cacheSize - 1)] = new Cached(id, out);
+        return out;
+    }
+
+    String decode(int pos) {
+        int length;
+        if (file == SubStringPointer.Files.STRINGS) {
+            // Null terminated
+            length = 0;
+            while (data.get(pos + length) != 0) {
+                length++;
+            }
+        } else {
+            // Length prefixed, length includes the null end
+            length = Math.max(data.getInt(pos) - 1, 0);
+            pos += 4;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer in = data.duplicate();
+        in.position(pos);
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    int size() {
+        return size;
+    }
+}
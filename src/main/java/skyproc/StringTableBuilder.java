@@ -0,0 +1,98 @@
+package skyproc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects the strings of a string tabled mod as it is exported, handing out
+ * one ID per distinct string, and writes them out as a STRINGS, DLSTRINGS or
+ * ILSTRINGS file.
+ *
+ * @author Justin Swanson
+ */
+class StringTableBuilder {
+
+    final SubStringPointer.Files file;
+    final Map<String, Integer> ids = new HashMap<>();
+    final ArrayList<byte[]> strings = new ArrayList<>();
+    int dataLength = 0;
+
+    StringTableBuilder(SubStringPointer.Files file) {
+        this.file = file;
+    }
+
+    /**
+     * @param in String to add.
+     * @return The ID of the string. IDs start at 1, as 0 is a null pointer.
+     */
+    synchronized int add(String in) {
+        Integer id = ids.get(in);
+        if (id == null) {
+            byte[] bytes = in.getBytes(StandardCharsets.ISO_8859_1);
+            strings.add(bytes);
+            id = strings.size();
+            ids.put(in, id);
+            dataLength += entryLength(bytes);
+        }
+        return id;
+    }
+
+    int entryLength(byte[] bytes) {
+        // DLSTRINGS and ILSTRINGS entries are length prefixed; all are null terminated
+        return (file == SubStringPointer.Files.STRINGS ? 0 : 4) + bytes.length + 1;
+    }
+
+    int size() {
+        return strings.size();
+    }
+
+    void clear() {
+        ids.clear();
+        strings.clear();
+        dataLength = 0;
+    }
+
+    /**
+     * Writes the table to disk in one go.
+     *
+     * @param f File to write.
+     * @throws IOException
+     */
+    void write(File f) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(8 + strings.size() * 8 + dataLength).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(strings.size());
+        out.putInt(dataLength);
+        int offset = 0;
+        for (int i = 0; i < strings.size(); i++) {
+            out.putInt(i + 1);
+            out.putInt(offset);
+            offset += entryLength(strings.get(i));
+        }
+        for (byte[] bytes : strings) {
+            if (file != SubStringPointer.Files.STRINGS) {
+                out.putInt(bytes.length + 1);
+            }
+            out.put(bytes);
+            out.put((byte) 0);
+        }
+        out.flip();
+        File dir = f.getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+}
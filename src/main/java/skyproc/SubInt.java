@@ -50,7 +50,9 @@ class SubInt extends SubRecordTyped<Integer> {
     void parseData(LImport in, Mod srcMod) throws BadRecord, DataFormatException, BadParameter {
         super.parseData(in, srcMod);
         data = in.extractInt(length);
-        logMod(srcMod, toString(), "Setting " + this + " to : " + print());
+        if (loggingMod()) {
+            logMod(srcMod, toString(), "Setting " + this + " to : " + print());
+        }
     }
 
     @Override
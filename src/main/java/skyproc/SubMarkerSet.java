@@ -13,7 +13,9 @@ import java.util.zip.DataFormatException;
 
 class SubMarkerSet<T extends SubRecord> extends SubRecord {
 
-    static String loadedMarker;
+    // Static, as the marker and the data after it aren't always parsed by the
+    // same instance (RACE's MNAM/FNAM). Kept per thread for parallel imports.
+    static final ThreadLocal<String> loadedMarker = new ThreadLocal<>();
     final Map<String, T> set = new HashMap<>(2);
     ArrayList<String> markers;
     final T prototype;
@@ -52,13 +54,16 @@ class SubMarkerSet<T extends SubRecord> extends SubRecord {
     void parseData(LImport in, Mod srcMod) throws BadRecord, DataFormatException, BadParameter {
         String next = Record.getNextType(in);
         if (markers.contains(next)) {
-            logMod(srcMod, "", "Loaded Marker " + next);
-            loadedMarker = next;
+            if (loggingMod()) {
+                logMod(srcMod, "", "Loaded Marker " + next);
+            }
+            loadedMarker.set(next);
         } else {
-            if (!set.containsKey(loadedMarker)) {
-                set.put(loadedMarker, (T) prototype.getNew(next));
+            String marker = loadedMarker.get();
+            if (!set.containsKey(marker)) {
+                set.put(marker, (T) prototype.getNew(next));
             }
-            set.get(loadedMarker).parseData(in, srcMod);
+            set.get(marker).parseData(in, srcMod);
         }
     }
 
@@ -12,6 +12,48 @@ abstract class SubPrototype implements Serializable {
     protected final Map<String, SubRecord> map = new HashMap<>(0);
     protected final ArrayList<String> listExtensive = new ArrayList<>();
     protected final Set<String> forceExport = new HashSet<>(0);
+    // Compiled from map on first lookup by packed type, dropped on any change
+    transient volatile Dispatch dispatch;
+
+    /**
+     * Open addressing table from packed subrecord types to their prototypes,
+     * along with the packed standard type each one is stored under.
+     */
+    static class Dispatch {
+
+        final int[] codes;
+        final int[] standard;
+        final SubRecord[] records;
+
+        Dispatch(Map<String, SubRecord> map) {
+            int capacity = 16;
+            while (capacity < map.size() * 2) {
+                capacity <<= 1;
+            }
+            codes = new int[capacity];
+            standard = new int[capacity];
+            records = new SubRecord[capacity];
+            for (Map.Entry<String, SubRecord> e : map.entrySet()) {
+                int code = FourCC.of(e.getKey());
+                int slot = FourCC.slot(code, capacity);
+                while (records[slot] != null) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                codes[slot] = code;
+                standard[slot] = FourCC.of(e.getValue().getType());
+                records[slot] = e.getValue();
+            }
+        }
+
+        int find(int code) {
+            for (int slot = FourCC.slot(code, codes.length); records[slot] != null; slot = (slot + 1) & (codes.length - 1)) {
+                if (codes[slot] == code) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+    }
 
     public SubPrototype() {
         addRecords();
@@ -38,6 +80,7 @@ abstract class SubPrototype implements Serializable {
             listExtensive.add(t);
         }
         listExport.add(r.getType());
+        dispatch = null;
         return r;
     }
 
@@ -79,6 +122,7 @@ abstract class SubPrototype implements Serializable {
             }
             map.remove(type);
             forceExport.remove(type);
+            dispatch = null;
         }
     }
 
@@ -89,4 +133,13 @@ abstract class SubPrototype implements Serializable {
     public SubRecord get(String type) {
         return map.get(type);
     }
+
+    Dispatch getDispatch() {
+        Dispatch out = dispatch;
+        if (out == null) {
+            out = new Dispatch(map);
+            dispatch = out;
+        }
+        return out;
+    }
 }
@@ -267,6 +267,14 @@ abstract class SubRecords implements Serializable, Iterable<SubRecord> {
         return length;
     }
 
+    int length(ModExporter out) {
+        int length = 0;
+        for (SubRecord s : this) {
+            length += s.getTotalLength(out);
+        }
+        return length;
+    }
+
     public abstract ArrayList<String> getTypes();
 
     public abstract ArrayList<String> getTopLevelTypes();
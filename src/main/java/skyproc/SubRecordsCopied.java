@@ -1,7 +1,5 @@
 package skyproc;
 
-import lev.Ln;
-
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -12,10 +10,12 @@ import java.util.Iterator;
 class SubRecordsCopied extends SubRecords {
 
     final SubRecords orig;
+    final Mod srcMod;
 
-    SubRecordsCopied(SubRecords rhs) {
+    SubRecordsCopied(SubRecords rhs, Mod srcMod) {
         super();
         orig = rhs;
+        this.srcMod = srcMod;
     }
 
     @Override
@@ -45,6 +45,15 @@ class SubRecordsCopied extends SubRecords {
         return length;
     }
 
+    @Override
+    int length(ModExporter out) {
+        int length = 0;
+        for (SubRecord s : iteratorNoCopy()) {
+            length += s.getTotalLength(out);
+        }
+        return length;
+    }
+
     public ArrayList<SubRecord> iteratorNoCopy() {
         ArrayList<SubRecord> out = new ArrayList<>();
         for (String t : orig.getTopLevelTypes()) {
@@ -71,7 +80,7 @@ class SubRecordsCopied extends SubRecords {
     @Override
     public SubRecord get(String in) {
         if (!map.containsKey(in)) {
-            SubRecord s = (SubRecord) Ln.deepCopy(orig.get(in));
+            SubRecord s = RecordCopier.copy(orig.get(in), orig.getPrototype(), srcMod);
             for (String t : s.getTypes()) {
                 map.put(t, s);
             }
@@ -1,7 +1,12 @@
 package skyproc;
 
+import lev.LImport;
+import skyproc.exceptions.BadParameter;
+import skyproc.exceptions.BadRecord;
+
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.zip.DataFormatException;
 
 /**
  * @author Justin Swanson
@@ -9,6 +14,11 @@ import java.util.Iterator;
 class SubRecordsDerived extends SubRecords {
 
     protected SubPrototype prototype;
+    // Subrecords by their slot in the prototype's Dispatch, so parsing finds
+    // them by packed type instead of going through the String map.  Only kept
+    // while subrecords are being imported.
+    transient SubPrototype.Dispatch slotsOf;
+    transient SubRecord[] slots;
 
     public SubRecordsDerived(SubPrototype proto) {
         this.prototype = proto;
@@ -57,6 +67,83 @@ class SubRecordsDerived extends SubRecords {
         return s;
     }
 
+    public SubRecord getSilent(String in) {
+        return get(in);
+    }
+
+    /**
+     * @return The subrecord for a slot of the prototype's Dispatch, looked up
+     * through getSilent() the first time and remembered after that.
+     */
+    SubRecord get(SubPrototype.Dispatch dispatch, int slot) {
+        if (slotsOf != dispatch) {
+            slots = new SubRecord[dispatch.records.length];
+            slotsOf = dispatch;
+        }
+        SubRecord s = slots[slot];
+        if (s == null) {
+            s = getSilent(FourCC.name(dispatch.codes[slot]));
+            slots[slot] = s;
+        }
+        return s;
+    }
+
+    @Override
+    void importSubRecords(LImport in, Mod srcMod) throws BadRecord, BadParameter, DataFormatException {
+        try {
+            super.importSubRecords(in, srcMod);
+        } finally {
+            dropSlots();
+        }
+    }
+
+    void dropSlots() {
+        slotsOf = null;
+        slots = null;
+    }
+
+    @Override
+    void importSubRecord(LImport in, Mod srcMod) throws BadRecord, DataFormatException, BadParameter {
+        int nextType = Record.getNextTypeCode(in);
+        SubPrototype.Dispatch dispatch = prototype.getDispatch();
+        int slot = dispatch.find(nextType);
+        if (slot != -1) {
+            SubRecord record = get(dispatch, slot);
+            record.parseData(record.extractRecordData(in), srcMod);
+        } else {
+            throw new BadRecord(getTypes().get(0) + " doesn't know what to do with a " + FourCC.name(nextType) + " record in source mod " + srcMod);
+        }
+    }
+
+    void forget(String type) {
+        if (slotsOf != null) {
+            int slot = slotsOf.find(FourCC.of(type));
+            if (slot != -1) {
+                slots[slot] = null;
+            }
+        }
+    }
+
+    @Override
+    public void add(SubRecord r) {
+        super.add(r);
+        for (String t : r.getTypes()) {
+            forget(t);
+        }
+    }
+
+    @Override
+    public void remove(String in) {
+        super.remove(in);
+        forget(in);
+    }
+
+    @Override
+    void clear() {
+        super.clear();
+        dropSlots();
+    }
+
     SubRecord createFromPrototype(String in) {
         SubRecord s = prototype.get(in).getNew(in);
         add(s);
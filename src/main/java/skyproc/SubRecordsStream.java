@@ -5,8 +5,7 @@ import lev.LInChannel;
 import skyproc.exceptions.BadParameter;
 import skyproc.exceptions.BadRecord;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.zip.DataFormatException;
 
 /*
@@ -19,7 +18,15 @@ import java.util.zip.DataFormatException;
  */
 class SubRecordsStream extends SubRecordsDerived {
 
-    protected final Map<String, RecordLocation> pos = new HashMap<>(0);
+    static final int[] noTypes = new int[0];
+    // Packed subrecord types not loaded yet, where the first of each starts and how many there are in a row
+    int[] locTypes = noTypes;
+    long[] locPos;
+    int[] locNum;
+    int numLocs = 0;
+    // The record's own bytes, when they are a view into memory. Streamed
+    // subrecords are then decoded from here rather than from the mod's input.
+    RecordShrinkArray data;
     MajorRecord major;
 
     SubRecordsStream(SubPrototype proto) {
@@ -35,7 +42,7 @@ class SubRecordsStream extends SubRecordsDerived {
     public boolean shouldExport(String t) {
         if (map.containsKey(t)) {
             return shouldExport(map.get(t));
-        } else if (pos.containsKey(t)) {
+        } else if (indexOf(t) != -1) {
             SubRecord s = get(t);
             return shouldExport(s);
         } else {
@@ -44,7 +51,7 @@ class SubRecordsStream extends SubRecordsDerived {
     }
 
     @Override
-    public SubRecord get(String in) {
+    public synchronized SubRecord get(String in) {
         SubRecord s = null;
         if (map.containsKey(in)) {
             s = map.get(in);
@@ -63,27 +70,73 @@ class SubRecordsStream extends SubRecordsDerived {
     @Override
     public void remove(String in) {
         super.remove(in);
-        pos.remove(in);
+        removeLocation(indexOf(in));
     }
 
     @Override
     void clear() {
         super.clear();
-        pos.clear();
+        numLocs = 0;
+        data = null;
+    }
+
+    int indexOf(String type) {
+        return indexOf(FourCC.of(type));
+    }
+
+    int indexOf(int type) {
+        for (int i = 0; i < numLocs; i++) {
+            if (locTypes[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void addLocation(int type, long position) {
+        if (numLocs == locTypes.length) {
+            int size = Math.max(4, numLocs * 2);
+            locTypes = Arrays.copyOf(locTypes, size);
+            locPos = locPos == null ? new long[size] : Arrays.copyOf(locPos, size);
+            locNum = locNum == null ? new int[size] : Arrays.copyOf(locNum, size);
+        }
+        locTypes[numLocs] = type;
+        locPos[numLocs] = position;
+        locNum[numLocs] = 1;
+        numLocs++;
+    }
+
+    void removeLocation(int i) {
+        if (i != -1) {
+            numLocs--;
+            locTypes[i] = locTypes[numLocs];
+            locPos[i] = locPos[numLocs];
+            locNum[i] = locNum[numLocs];
+        }
     }
 
     @Override
     void importSubRecords(LImport in, Mod srcMod) throws BadRecord, BadParameter, DataFormatException {
-        while (!in.isDone()) {
-            importSubRecord(in, srcMod);
+        if (in instanceof RecordShrinkArray && ((RecordShrinkArray) in).isView()) {
+            data = (RecordShrinkArray) in;
+        }
+        try {
+            while (!in.isDone()) {
+                importSubRecord(in, srcMod);
+            }
+        } finally {
+            dropSlots();
+        }
+        if (!SPGlobal.logging(SPGlobal.LogCategory.MOD)) {
+            return;
         }
         // Print compressed summary
         int counter = 0;
         StringBuilder print = new StringBuilder();
         for (String type : getTypes()) {
-            RecordLocation r = pos.get(type);
-            if (r != null) {
-                print.append(type).append(" [").append(r.pos).append("](").append(r.num).append(") ");
+            int i = indexOf(type);
+            if (i != -1) {
+                print.append(type).append(" [").append(locPos[i]).append("](").append(locNum[i]).append(") ");
                 counter++;
                 if (counter == 5) {
                     SPGlobal.logMod(srcMod, "", print.toString());
@@ -99,27 +152,30 @@ class SubRecordsStream extends SubRecordsDerived {
 
     @Override
     void importSubRecord(LImport in, Mod srcMod) throws BadRecord, DataFormatException, BadParameter {
-        String nextType = Record.getNextType(in);
-        if (contains(nextType)) {
+        int nextType = Record.getNextTypeCode(in);
+        SubPrototype.Dispatch dispatch = prototype.getDispatch();
+        int slot = dispatch.find(nextType);
+        if (slot != -1) {
             if (SPGlobal.streamMode && (in instanceof RecordShrinkArray || in instanceof LInChannel)) {
-                String standardType = prototype.get(nextType).getType();
-                if (!pos.containsKey(standardType)) {
-                    long position = in.pos();
-                    pos.put(standardType, new RecordLocation(position));
+                int standardType = dispatch.standard[slot];
+                int i = indexOf(standardType);
+                if (i == -1) {
+                    addLocation(standardType, in.pos());
                 } else {
-                    pos.get(standardType).num++;
+                    locNum[i]++;
                 }
-                in.skip(prototype.get(nextType).getRecordLength(in));
+                in.skip(dispatch.records[slot].getRecordLength(in));
             } else {
-                SubRecord record = getSilent(nextType);
+                SubRecord record = get(dispatch, slot);
                 record.parseData(record.extractRecordData(in), srcMod);
             }
         } else {
-            SPGlobal.logError("BadRecord", this.prototype + " doesn't know what to do with a " + nextType + " record in source mod " + srcMod);
+            SPGlobal.logError("BadRecord", this.prototype + " doesn't know what to do with a " + FourCC.name(nextType) + " record in source mod " + srcMod);
 //            throw new BadRecord();
         }
     }
 
+    @Override
     public SubRecord getSilent(String nextType) {
         if (map.containsKey(nextType)) {
             return map.get(nextType);
@@ -130,20 +186,31 @@ class SubRecordsStream extends SubRecordsDerived {
 
     void loadFromPosition(SubRecord s) throws BadRecord, BadParameter, DataFormatException {
         if (SPGlobal.streamMode) {
-            RecordLocation position = pos.get(s.getType());
-            if (position != null) {
+            int index = indexOf(s.getType());
+            if (index != -1) {
                 try {
-                    major.srcMod.input.pos(position.pos);
                     if (SPGlobal.debugStream && SPGlobal.logging()) {
-                        if (!major.equals(SPGlobal.lastStreamed)) {
+                        SPSession session = SPSession.current();
+                        if (!major.equals(session.lastStreamed)) {
                             SPGlobal.logMod(major.srcMod, "Stream", "Streaming from " + major);
-                            SPGlobal.lastStreamed = major;
+                            session.lastStreamed = major;
                         }
                     }
-                    for (int i = 0; i < position.num; i++) {
-                        s.parseData(s.extractRecordData(major.srcMod.input), major.srcMod);
+                    if (data != null) {
+                        // Fresh reader over the record's bytes, so other threads aren't disturbed
+                        RecordShrinkArray view = data.view();
+                        view.pos(locPos[index]);
+                        parseLocation(s, view, index);
+                    } else {
+                        // Otherwise the mod's one input is positioned and read,
+                        // which export and stream threads must take turns at
+                        LInChannel in = major.srcMod.input;
+                        synchronized (in) {
+                            in.pos(locPos[index]);
+                            parseLocation(s, in, index);
+                        }
                     }
-                    pos.remove(s.getType());
+                    removeLocation(index);
                 } catch (BadRecord | BadParameter | DataFormatException e) {
                     SPGlobal.logError("Stream Error", "Error streaming subrecord type " + s.getType() + " from " + major);
                     throw e;
@@ -152,13 +219,9 @@ class SubRecordsStream extends SubRecordsDerived {
         }
     }
 
-    protected static class RecordLocation {
-
-        final long pos;
-        int num = 1;
-
-        RecordLocation(long pos) {
-            this.pos = pos;
+    void parseLocation(SubRecord s, LImport in, int index) throws BadRecord, BadParameter, DataFormatException {
+        for (int i = 0; i < locNum[index]; i++) {
+            s.parseData(s.extractRecordData(in), major.srcMod);
         }
     }
 }
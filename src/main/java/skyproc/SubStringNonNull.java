@@ -19,7 +19,9 @@ public class SubStringNonNull extends SubString {
     void parseData(LImport in, Mod srcMod) {
         in.skip(getIdentifierLength() + getSizeLength());
         string = Ln.arrayToString(in.extractInts(in.available()));
-        logMod(srcMod, getType(), "Setting " + this + " to " + print());
+        if (loggingMod()) {
+            logMod(srcMod, getType(), "Setting " + this + " to " + print());
+        }
     }
 
     @Override
@@ -7,7 +7,6 @@ import skyproc.exceptions.BadParameter;
 import skyproc.exceptions.BadRecord;
 
 import java.io.IOException;
-import java.util.Map;
 import java.util.Objects;
 import java.util.zip.DataFormatException;
 
@@ -70,30 +69,12 @@ class SubStringPointer extends SubRecordTyped {
 
     void fetchStringPointers(Mod srcMod) {
         if (srcMod.isFlag(Mod_Flags.STRING_TABLED)) {
-            Map<SubStringPointer.Files, LImport> streams = srcMod.stringStreams;
-            if (data.isValid() && streams.containsKey(file)) {
-                int index = Ln.arrayToInt(data.getData());
-                if (srcMod.stringLocations.get(file).containsKey(index)) {
-                    int offset = srcMod.stringLocations.get(file).get(index);
-                    LImport stream = streams.get(file);
-
-                    stream.pos(offset);
-
-                    switch (file) {
-                        case STRINGS:
-                            int input;
-                            StringBuilder string = new StringBuilder();
-                            while ((input = stream.read()) != 0) {
-                                string.append((char) input);
-                            }
-                            text.setString(string.toString());
-                            break;
-                        default:
-                            int length = Ln.arrayToInt(stream.extractInts(0, 4));
-                            String in = Ln.arrayToString(stream.extractInts(0, length - 1)); // -1 to exclude null end
-                            if (!in.equals("")) {
-                                text.setString(in);
-                            }
+            StringTable table = srcMod.stringTables.get(file);
+            if (data.isValid() && table != null) {
+                String in = table.get(Ln.arrayToInt(data.getData()));
+                if (in != null) {
+                    if (!in.equals("") || file == SubStringPointer.Files.STRINGS) {
+                        text.setString(in);
                     }
                 } else {
                     if (logging() && SPGlobal.debugStringPairing) {
@@ -147,6 +128,15 @@ class SubStringPointer extends SubRecordTyped {
         }
     }
 
+    @Override
+    int getTotalLength(ModExporter out) {
+        if (isValid() || forceExport) {
+            return super.getTotalLength(out);
+        } else {
+            return 0;
+        }
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
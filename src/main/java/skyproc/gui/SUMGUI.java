@@ -433,53 +433,13 @@ public class SUMGUI extends JFrame {
             setPatchNeeded(true);
             return true;
         }
-        try {
-            // See if imported mods and last mod list are the same
-            ArrayList<String> oldList = save.getStrings(SUMGUISettings.LastModlist);
-            for (int i = 0; i < oldList.size(); i++) {
-                String oldString = oldList.get(i);
-                if (oldString.contains(SPDatabase.dateDelim)) {
-                    oldList.set(i, oldString.substring(0, oldString.indexOf(SPDatabase.dateDelim)));
-                }
-            }
-            ArrayList<ModListing> curList = new ArrayList<>(SPImporter.getActiveModList());
-            curList.remove(hook.getListing());
-            ArrayList<ModListing> curListTmp = new ArrayList<>(curList);
-
-            if (curList.size() != oldList.size()) {
-                if (SPGlobal.logging()) {
-                    SPGlobal.logMain("Needs Importing", "Needs importing because last Modlist isn't the same size as current.");
-                }
-                return true;
-            }
 
-            for (int i = 0; i < curList.size(); i++) {
-                ModListing m = curListTmp.get(i);
-                if (!oldList.get(i).equals(m.print().toUpperCase())) {
-                    if (SPGlobal.logging()) {
-                        SPGlobal.logMain("Needs Importing", "Needs importing because " + oldList.get(i) + " doesn't match " + m.print() + " at index " + i);
-                    }
-                    return true;
-                }
-            }
-
-            // Check dates
-            ArrayList<String> changedMods = getChangedMods(true);
-            if (changedMods.size() > 0) {
-                if (SPGlobal.logging()) {
-                    SPGlobal.logMain("Needs Importing", "Needs importing because " + changedMods.get(0) + " had its date changed.");
-                }
-                return true;
-            }
-
-            //Don't need a patch, check for custom hook coding
-            return SUMGUI.hook.needsPatching();
-
-        } catch (IOException ex) {
-            SPGlobal.logException(ex);
+        // Load order changes were already checked against plugin manifests,
+        // and none of them touched records the patcher is interested in.
+        if (SPGlobal.logging()) {
+            SPGlobal.logMain("Needs Importing", "No importing needed, no relevant changes to the load order.");
         }
-
-        return true;
+        return false;
     }
 
     static boolean testNeedsPatching(boolean imported) {
@@ -521,66 +481,65 @@ public class SUMGUI extends JFrame {
             }
         }
 
-        // If imported, check master lists
-        if (imported) {
-            // Compile old and new Master lists
-            ArrayList<String> oldMasterList = save.getStrings(SUMGUISettings.LastMasterlist);
+        // Check master lists.  If not imported yet, plugin manifests stand in for the imported mods.
+        ArrayList<String> oldMasterList = save.getStrings(SUMGUISettings.LastMasterlist);
 
-            ArrayList<String> curImportedMods = new ArrayList<>();
-            for (ModListing m : SPDatabase.getImportedModListings()) {
+        ArrayList<String> curImportedMods = new ArrayList<>();
+        try {
+            for (ModListing m : imported ? SPDatabase.getImportedModListings() : SPImporter.getActiveModList()) {
                 curImportedMods.add(m.print().toUpperCase());
             }
-            curImportedMods.remove(SPGlobal.getGlobalPatch().getName().toUpperCase());
-
-            //Remove matching master mods, must be in order
-            ArrayList<String> curImportedModsTmp = new ArrayList<>(curImportedMods);
-            for (int i = 0; i < curImportedModsTmp.size(); i++) {
-                String curName = curImportedModsTmp.get(i);
-                if (oldMasterList.contains(curName)) {
-                    for (int j = 0; j < oldMasterList.size(); j++) {
-                        if (oldMasterList.get(j).equalsIgnoreCase(curName)) {
-                            oldMasterList.remove(j);
-                            break;
-                        } else if (curImportedModsTmp.contains(oldMasterList.get(j))) {
-                            //Matching mods out of order, need to patch
-                            if (SPGlobal.logging()) {
-                                SPGlobal.logMain(header, "Patch needed because masters from before were in a different order.");
-                            }
-                            return true;
+        } catch (IOException ex) {
+            SPGlobal.logException(ex);
+            return true;
+        }
+        curImportedMods.remove(SPGlobal.getGlobalPatch().getName().toUpperCase());
+
+        //Remove matching master mods, must be in order
+        ArrayList<String> curImportedModsTmp = new ArrayList<>(curImportedMods);
+        for (int i = 0; i < curImportedModsTmp.size(); i++) {
+            String curName = curImportedModsTmp.get(i);
+            if (oldMasterList.contains(curName)) {
+                for (int j = 0; j < oldMasterList.size(); j++) {
+                    if (oldMasterList.get(j).equalsIgnoreCase(curName)) {
+                        oldMasterList.remove(j);
+                        break;
+                    } else if (curImportedModsTmp.contains(oldMasterList.get(j))) {
+                        //Matching mods out of order, need to patch
+                        if (SPGlobal.logging()) {
+                            SPGlobal.logMain(header, "Patch needed because masters from before were in a different order.");
                         }
+                        return true;
                     }
                 }
             }
+        }
 
-            //If old masters are missing, need patch
-            if (!oldMasterList.isEmpty()) {
-                if (SPGlobal.logging()) {
-                    SPGlobal.logMain(header, "Patch needed because old masters are missing:");
-                    for (String s : oldMasterList) {
-                        SPGlobal.logMain(header, "   " + s);
-                    }
+        //If old masters are missing, need patch
+        if (!oldMasterList.isEmpty()) {
+            if (SPGlobal.logging()) {
+                SPGlobal.logMain(header, "Patch needed because old masters are missing:");
+                for (String s : oldMasterList) {
+                    SPGlobal.logMain(header, "   " + s);
                 }
-                return true;
             }
+            return true;
+        }
 
 
-            //Check mods that were imported last time for date modified changes, and remove them if they weren't changed.
-            curImportedMods.removeAll(getChangedMods(false));
+        //Check mods that were imported last time for changes, and remove them if they weren't changed.
+        curImportedMods.removeAll(getChangedMods(false));
 
-            //Check new mods for any records patcher is interested in.  If interesting records found, need patch.
-            for (String curString : curImportedMods) {
-                Mod curMaster = SPDatabase.getMod(new ModListing(curString));
-                ArrayList<GRUP_TYPE> contained = curMaster.getContainedTypes();
-                for (GRUP_TYPE g : hook.importRequests()) {
-                    if (contained.contains(g)) {
-                        if (SPGlobal.logging()) {
-                            SPGlobal.logMain(header, "Patch needed because " + curMaster + " had records patch might be interested in.");
-                        }
-                        return true;
-                    }
+        //Check new mods for any records patcher is interested in.  If interesting records found, need patch.
+        GRUP_TYPE[] requests = hook.importRequests();
+        for (String curString : curImportedMods) {
+            PluginManifest manifest = PluginManifest.get(new ModListing(curString));
+            if (manifest == null || manifest.containsAny(requests)) {
+                if (SPGlobal.logging()) {
+                    SPGlobal.logMain(header, "Patch needed because " + curString + " had records patch might be interested in.");
                 }
+                return true;
             }
-
         }
 
         //Don't need a patch, check for custom hook coding
@@ -595,6 +554,7 @@ public class SUMGUI extends JFrame {
         ArrayList<String> oldModListRaw = save.getStrings(SUMGUISettings.LastModlist);
         ArrayList<String> oldModList = new ArrayList<>(oldModListRaw.size());
         ArrayList<Long> oldModListDate = new ArrayList<>(oldModListRaw.size());
+        ArrayList<String> oldModListHash = new ArrayList<>(oldModListRaw.size());
         ArrayList<String> out = new ArrayList<>();
         for (String modAndDate : oldModListRaw) {
             String[] split = modAndDate.split(SPDatabase.dateDelim);
@@ -602,6 +562,7 @@ public class SUMGUI extends JFrame {
             if (split.length > 1) {
                 oldModListDate.add(Long.valueOf(split[1]));
             }
+            oldModListHash.add(split.length > 2 ? split[2] : null);
         }
 
         // If no dates
@@ -618,6 +579,11 @@ public class SUMGUI extends JFrame {
             String modName = oldModListTmp.get(i);
             File modFile = new File(SPGlobal.pathToDataFixed + modName);
             boolean changedF = modFile.lastModified() != oldModListDate.get(i);
+            if (changedF && oldModListHash.get(i) != null) {
+                // Date changed, but contents may not have
+                PluginManifest manifest = PluginManifest.get(new ModListing(modName));
+                changedF = manifest == null || !Long.toHexString(manifest.getHash()).equalsIgnoreCase(oldModListHash.get(i));
+            }
             if ((changed && changedF)
                     || (!changed && !changedF)) {
                 out.add(modName);
@@ -626,6 +592,22 @@ public class SUMGUI extends JFrame {
         return out;
     }
 
+    /**
+     * @return Mod names, dates and content hashes, so a mod that was only
+     * touched isn't counted as changed on the next run.
+     */
+    static ArrayList<String> getModListHashes() {
+        ArrayList<String> out = SPDatabase.getModListDates();
+        for (int i = 0; i < out.size(); i++) {
+            String modName = out.get(i).substring(0, out.get(i).indexOf(SPDatabase.dateDelim));
+            PluginManifest manifest = PluginManifest.get(new ModListing(modName));
+            if (manifest != null) {
+                out.set(i, out.get(i) + SPDatabase.dateDelim + Long.toHexString(manifest.getHash()));
+            }
+        }
+        return out;
+    }
+
     static void closingGUIwindow() {
         SPGlobal.logMain(header, "Window Closing.");
         if (justSettings || !patchrequested) {
@@ -657,7 +639,7 @@ public class SUMGUI extends JFrame {
     static public void exitProgram(boolean generatedPatch, boolean forceClose) {
         SPGlobal.log(header, "Exit requested.");
         if (generatedPatch) {
-            save.setStrings(SUMGUISettings.LastModlist, Ln.toUpper(SPDatabase.getModListDates()));
+            save.setStrings(SUMGUISettings.LastModlist, Ln.toUpper(getModListHashes()));
             save.setStrings(SUMGUISettings.LastMasterlist, Ln.toUpper(SPGlobal.getGlobalPatch().getMastersStrings()));
             save.setBool(SUMGUISettings.CrashState, false);
             save.setInt(SUMGUISettings.PrevVersion, NiftyFunc.versionToNum(hook.getVersion()));
@@ -22,6 +22,8 @@ import java.awt.image.BufferedImage;
 import java.io.*;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.Objects;
 
 /**
@@ -38,6 +40,8 @@ public class SUMprogram implements SUM {
     final ArrayList<String> exclude = new ArrayList<>(2);
     final ArrayList<PatcherLink> links = new ArrayList<>();
     final ArrayList<File> blockedLinks = new ArrayList<>();
+    // Patches made by patchers run inside SUM, handed to the ones after them
+    final ArrayList<Mod> generatedPatches = new ArrayList<>();
     // GUI
     SPMainMenuPanel mmenu;
     HookMenu hookMenu;
@@ -253,32 +257,8 @@ public class SUMprogram implements SUM {
         ArrayList<File> jars = findJars(new File(SPGlobal.pathToPatchers));
         // Locate classes that implement SUM
         for (File jar : jars) {
-            try {
-                SPGlobal.logSpecial(SUMlogs.JarHook, "Jar Load", "Loading jar " + jar);
-                ArrayList<Class<?>> classes = Ln.loadClasses(jar, true);
-                // FIXME: use class.getInterfaces to check for SUM
-                for (Class<?> c : classes) {
-                    //Skip skyproc or lev classes
-                    if (c.toString().contains("lev.") || (c.toString().contains("skyproc."))) {
-                        continue;
-                    }
-                    try {
-                        Object tester = c.newInstance();
-                        if (tester instanceof SUM) {
-                            SPGlobal.logSpecial(SUMlogs.JarHook, "Jar Load", "   Added jar " + jar);
-                            PatcherLink newLink = new PatcherLink((SUM) c.newInstance(), jar);
-                            if (!links.contains(newLink)) {
-                                links.add(newLink);
-                            }
-                            break;
-                        }
-                    } catch (Throwable ex) { // intentionally catch anything from trying to create classes
-                        SPGlobal.logSpecial(SUMlogs.JarHook, "Loading class", "   Skipped " + c + ": " + ex.getMessage());
-                    }
-                }
-            } catch (Throwable ex) { // intentionally catch anything from trying to load jars
-                SPGlobal.logSpecial(SUMlogs.JarHook, "Loading jar", "   Skipped jar " + jar + ": " + ex.getMessage());
-            }
+            // Patchers' saves are made when they're loaded, so point them at the patcher's folder
+            SkyProcSave.createIn(jar.getParentFile(), () -> hookJar(jar));
         }
 
         // Test links to make sure they're up to date SUM
@@ -301,6 +281,35 @@ public class SUMprogram implements SUM {
         sortLinks(links);
     }
 
+    void hookJar(File jar) {
+        try {
+            SPGlobal.logSpecial(SUMlogs.JarHook, "Jar Load", "Loading jar " + jar);
+            ArrayList<Class<?>> classes = Ln.loadClasses(jar, true);
+            // FIXME: use class.getInterfaces to check for SUM
+            for (Class<?> c : classes) {
+                //Skip skyproc or lev classes
+                if (c.toString().contains("lev.") || (c.toString().contains("skyproc."))) {
+                    continue;
+                }
+                try {
+                    Object tester = c.newInstance();
+                    if (tester instanceof SUM) {
+                        SPGlobal.logSpecial(SUMlogs.JarHook, "Jar Load", "   Added jar " + jar);
+                        PatcherLink newLink = new PatcherLink((SUM) c.newInstance(), jar);
+                        if (!links.contains(newLink)) {
+                            links.add(newLink);
+                        }
+                        break;
+                    }
+                } catch (Throwable ex) { // intentionally catch anything from trying to create classes
+                    SPGlobal.logSpecial(SUMlogs.JarHook, "Loading class", "   Skipped " + c + ": " + ex.getMessage());
+                }
+            }
+        } catch (Throwable ex) { // intentionally catch anything from trying to load jars
+            SPGlobal.logSpecial(SUMlogs.JarHook, "Loading jar", "   Skipped jar " + jar + ": " + ex.getMessage());
+        }
+    }
+
     ArrayList<File> findJars(File dir) {
         SPGlobal.logSpecial(SUMlogs.JarHook, "Jar Load", "Path to patchers: " + dir.getAbsolutePath());
         ArrayList<File> files = Ln.generateFileList(dir, false);
@@ -469,7 +478,11 @@ public class SUMprogram implements SUM {
         // Setup
         ArrayList<PatcherLink> activeLinks = getActiveLinks();
         setupProgress(activeLinks);
-        checkMemAllocation();
+        if (SUMsave.getBool(SUMSettings.IN_PROCESS)) {
+            SPGlobal.logMain("Run Changes", "Running patchers inside SUM with " + Ln.toMB(Runtime.getRuntime().maxMemory()) + "MB max memory.");
+        } else {
+            checkMemAllocation();
+        }
 
         runLOOT();
         sortLinks(activeLinks);
@@ -561,22 +574,37 @@ public class SUMprogram implements SUM {
         }
     }
 
-    void runEachPatcher(ArrayList<PatcherLink> activeLinks) {
-        SUMGUI.progress.setStatus("Running Patchers");
-        for (PatcherLink link : activeLinks) {
-            SUMGUI.progress.setStatusNumbered("Running " + link.getName());
-            SPGlobal.logMain("Run Changes", "Running jar: " + link.path);
-            if (!link.isActive()) {
-                SPGlobal.logMain("Run Changes", "Skipped jar because it was not selected: " + link.path);
-            } else if (runJarPatcher(link)) {
-                SPGlobal.logMain("Run Changes", "Successfully ran jar: " + link.path);
-            } else {
-                int response = JOptionPane.showConfirmDialog(null, "Failed to properly run " + link.getName() + ".  Continue patching?", "Error", JOptionPane.YES_NO_OPTION);
-                if (response == JOptionPane.NO_OPTION) {
-                    SUMGUI.exitProgram(false, true);
+    void runEachPatcher(ArrayList<PatcherLink> activeLinks) throws Exception {
+        SPSession shared = null;
+        // importShared() changes these for the patchers; SUM gets its own back after
+        Language language = SPGlobal.language;
+        boolean noModsAfter = SPGlobal.getNoModsAfter();
+        boolean allModsAsMasters = SPGlobal.getAllModsAsMasters();
+        try {
+            if (SUMsave.getBool(SUMSettings.IN_PROCESS)) {
+                shared = importShared(activeLinks);
+            }
+            SUMGUI.progress.setStatus("Running Patchers");
+            for (PatcherLink link : activeLinks) {
+                SUMGUI.progress.setStatusNumbered("Running " + link.getName());
+                SPGlobal.logMain("Run Changes", "Running jar: " + link.path);
+                if (!link.isActive()) {
+                    SPGlobal.logMain("Run Changes", "Skipped jar because it was not selected: " + link.path);
+                } else if (shared != null ? runInProcess(link, shared) : runJarPatcher(link)) {
+                    SPGlobal.logMain("Run Changes", "Successfully ran jar: " + link.path);
+                } else {
+                    int response = JOptionPane.showConfirmDialog(null, "Failed to properly run " + link.getName() + ".  Continue patching?", "Error", JOptionPane.YES_NO_OPTION);
+                    if (response == JOptionPane.NO_OPTION) {
+                        SUMGUI.exitProgram(false, true);
+                    }
+                    SPGlobal.logMain("Run Changes", "UNsuccessfully ran jar: " + link.path);
                 }
-                SPGlobal.logMain("Run Changes", "UNsuccessfully ran jar: " + link.path);
             }
+        } finally {
+            generatedPatches.clear();
+            SPGlobal.language = language;
+            SPGlobal.setNoModsAfter(noModsAfter);
+            SPGlobal.setAllModsAsMasters(allModsAsMasters);
         }
     }
 
@@ -607,6 +635,99 @@ public class SUMprogram implements SUM {
         return ret;
     }
 
+    /**
+     * Imports everything the patchers asked for, once, for them all to share.
+     * Patchers run as their own programs would have been passed these
+     * settings as arguments.
+     */
+    SPSession importShared(ArrayList<PatcherLink> activeLinks) throws Exception {
+        int bar = SUMGUI.progress.getBar();
+        int max = SUMGUI.progress.getMax();
+        EnumSet<GRUP_TYPE> requests = EnumSet.noneOf(GRUP_TYPE.class);
+        for (PatcherLink link : activeLinks) {
+            requests.addAll(Arrays.asList(link.hook.importRequests()));
+        }
+        SPGlobal.language = Language.values()[SUMsave.getInt(SUMSettings.LANGUAGE)];
+        SPGlobal.setAllModsAsMasters(SUMsave.getBool(SUMSettings.ALL_AS_MASTERS));
+        SUMGUI.loadBlockedMods(SPGlobal.getSkyProcDocuments() + "\\SUM Mod Blocklist.txt");
+        // Each patcher's session is cut off at its own patch instead
+        SPGlobal.setNoModsAfter(false);
+        generatedPatches.clear();
+
+        SUMGUI.progress.setStatus("Importing plugins for all patchers");
+        SPSession shared = SPSession.create();
+        shared.call(() -> {
+            SPGlobal.setGlobalPatch(getExportPatch());
+            SPImporter.importActiveMods(new ArrayList<>(requests));
+            return null;
+        });
+        SUMGUI.progress.setMax(max);
+        SUMGUI.progress.setBar(bar);
+        return shared;
+    }
+
+    /**
+     * Runs a patcher against the shared import, in a session of its own that
+     * only holds the plugins before its patch, plus the patches already
+     * generated for the patchers before it.
+     */
+    boolean runInProcess(PatcherLink link, SPSession shared) {
+        int bar = SUMGUI.progress.getBar();
+        int max = SUMGUI.progress.getMax();
+        boolean ret;
+        try {
+            SPSession session = shared.share(link.hook.getListing());
+            ret = session.call(() -> {
+                for (Mod patch : generatedPatches) {
+                    if (SPDatabase.hasMod(patch.getInfo())) {
+                        session.addCopy(patch);
+                    }
+                }
+                return runHook(link.hook);
+            });
+        } catch (Throwable ex) { // a patcher failing shouldn't take SUM down with it
+            SPGlobal.logException(ex);
+            ret = false;
+        }
+        // Patchers report to SUM's progress bar while they run
+        SUMGUI.progress.setMax(max);
+        SUMGUI.progress.setBar(bar + 1);
+        return ret;
+    }
+
+    boolean runHook(SUM hook) throws Exception {
+        if (hook.hasSave()) {
+            hook.getSave().init();
+        }
+        SPGlobal.setGlobalPatch(hook.getExportPatch());
+        // Nothing is imported in this session, so its patch's IDs aren't loaded yet
+        SPGlobal.importConsistency();
+        try {
+            hook.onStart();
+        } catch (Exception ex) {
+            SPGlobal.logException(ex);
+        }
+        for (ModListing m : hook.requiredMods()) {
+            if (!SPDatabase.hasMod(m)) {
+                SPGlobal.logError("Run Changes", hook.getName() + " requires " + m + ", which was not imported.");
+                return false;
+            }
+        }
+        hook.runChangesToPatch();
+        Mod patch = SPGlobal.getGlobalPatch();
+        patch.export();
+        generatedPatches.add(patch);
+        try {
+            hook.onExit(true);
+        } catch (Exception ex) {
+            SPGlobal.logException(ex);
+        }
+        if (hook.hasSave()) {
+            hook.getSave().saveToFile();
+        }
+        return true;
+    }
+
     void mergePatches(ArrayList<PatcherLink> links) throws IOException {
         if (SUMsave.getBool(SUMSettings.MERGE_PATCH)) {
             SUMGUI.progress.setStatusNumbered("Merging Patches");
@@ -632,7 +753,8 @@ public class SUMprogram implements SUM {
         DISABLED,
         RUN_LOOT,
         ALL_AS_MASTERS,
-        LANGUAGE
+        LANGUAGE,
+        IN_PROCESS
     }
 
     enum SUMlogs {
@@ -649,6 +771,7 @@ public class SUMprogram implements SUM {
             Add(SUMSettings.ALL_AS_MASTERS, false, false);
             Add(SUMSettings.MAX_MEM, 750, false);
             Add(SUMSettings.LANGUAGE, 0, true);
+            Add(SUMSettings.IN_PROCESS, false, false);
         }
 
         @Override
@@ -667,6 +790,11 @@ public class SUMprogram implements SUM {
                     "Windows has the final say in how much memory it will allow the programs.  If your request is denied you'll see an error.  Just lower your memory request and try again.");
             helpInfo.put(SUMSettings.LANGUAGE,
                     "You can set your preferred language here.  This will make the patchers import strings files of that language first.");
+            helpInfo.put(SUMSettings.IN_PROCESS,
+                    "SUM will import your load order once and run every patcher against it, rather than starting each patcher as its own program that imports everything again.\n" +
+                    "Patchers then share SUM's memory, so Max Allocated Memory does not apply; SUM itself needs to be started with enough memory for all of them.\n" +
+                    "Patches are always regenerated in this mode.\n" +
+                    "This is still an experimental setting.  If a patcher misbehaves, turn this off.");
         }
     }
 
@@ -702,6 +830,7 @@ public class SUMprogram implements SUM {
 
         LCheckBox runLoot;
         LCheckBox AllModsAsMasters;
+        LCheckBox inProcess;
         LCheckBox mergePatches;
         LNumericSetting maxMem;
         LLabel langLabel;
@@ -736,6 +865,13 @@ public class SUMprogram implements SUM {
             setPlacement(AllModsAsMasters);
             AddSetting(AllModsAsMasters);
 
+            inProcess = new LCheckBox("Run Patchers Inside SUM", settingFont, SUMGUI.light);
+            inProcess.setOffset(-3);
+            inProcess.addShadow();
+            inProcess.tie(SUMSettings.IN_PROCESS, SUMsave, SUMGUI.helpPanel, true);
+            setPlacement(inProcess);
+            AddSetting(inProcess);
+
             maxMem = new LNumericSetting("Max Allocated Memory",
                     settingFont, SUMGUI.light, 250, 2000, 250);
             maxMem.tie(SUMSettings.MAX_MEM, SUMsave, SUMGUI.helpPanel, true);
@@ -0,0 +1,30 @@
+package skyproc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks which log arguments are handed to the writer as they are.
+ */
+public class AsyncLogTest {
+
+    @Test
+    void immutableArgumentsPassThrough() {
+        Integer number = 70000;
+        String[] lines = {"a", "b"};
+        List<String> list = new ArrayList<>();
+        list.add("before");
+        Object[] args = AsyncLog.freeze(new Object[]{"text", number, GRUP_TYPE.NPC_, true, lines, null, list});
+        assertSame(number, args[1]);
+        assertSame(GRUP_TYPE.NPC_, args[2]);
+        assertSame(lines, args[4]);
+        assertNull(args[5]);
+        // A list may change before it is written, so it is formatted now
+        list.add("after");
+        assertEquals("[before]", args[6]);
+    }
+}
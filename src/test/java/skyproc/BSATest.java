@@ -0,0 +1,155 @@
+package skyproc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import skyproc.exceptions.BadParameter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads small archives through the index cache, including caches that no
+ * longer match their archive.
+ */
+public class BSATest {
+
+    static final long modified = 1500000000000L;
+
+    @TempDir
+    File dir;
+    File documents;
+    File archive;
+    final List<BSA> opened = new ArrayList<>();
+
+    @BeforeEach
+    void setDocuments() {
+        documents = SPGlobal.skyProcDocuments;
+        SPGlobal.skyProcDocuments = new File(dir, "SkyProc");
+        archive = new File(dir, "Test.bsa");
+    }
+
+    @AfterEach
+    void restoreDocuments() {
+        SPGlobal.skyProcDocuments = documents;
+        for (BSA bsa : opened) {
+            bsa.close();
+        }
+    }
+
+    /**
+     * Writes a version 105 archive holding one folder of empty files.
+     */
+    static void write(File f, String folder, String... files) throws IOException {
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        for (String file : files) {
+            names.write(file.getBytes(StandardCharsets.ISO_8859_1));
+            names.write(0);
+        }
+        int folderNameLength = folder.length() + 1;
+        int fileNameLength = names.size();
+        ByteBuffer out = ByteBuffer.allocate(36 + 24 + 1 + folderNameLength + files.length * 16 + fileNameLength)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        out.put("BSA\0".getBytes(StandardCharsets.ISO_8859_1)).putInt(105).putInt(36).putInt(3)
+                .putInt(1).putInt(files.length).putInt(folderNameLength).putInt(fileNameLength).putInt(0);
+        out.putLong(0).putInt(files.length).putInt(0).putLong(36 + 24 + fileNameLength);
+        out.put((byte) folderNameLength).put(folder.getBytes(StandardCharsets.ISO_8859_1)).put((byte) 0);
+        for (String file : files) {
+            out.putLong(0).putInt(0).putInt(0);
+        }
+        out.put(names.toByteArray());
+        Files.write(f.toPath(), out.array());
+        assertTrue(f.setLastModified(modified));
+    }
+
+    BSA load(File f) throws Exception {
+        BSA out = new BSA(f.getPath());
+        opened.add(out);
+        assertFalse(out.bad);
+        return out;
+    }
+
+    @Test
+    void readsThroughTheIndexCache() throws Exception {
+        write(archive, "meshes", "a.nif", "b.nif");
+        BSA first = load(archive);
+        assertTrue(first.getIndexFile().isFile());
+        BSA cached = load(archive);
+        assertTrue(cached.hasFile("meshes\\a.nif"));
+        assertTrue(cached.hasFile("meshes\\b.nif"));
+        assertEquals(first.getFiles(), cached.getFiles());
+    }
+
+    @Test
+    void staleIndexIsIgnored() throws Exception {
+        write(archive, "meshes", "a.nif");
+        load(archive);
+        // Same path and date, but the archive has changed since it was cached
+        write(archive, "meshes", "b.nif", "c.nif");
+        BSA bsa = load(archive);
+        assertFalse(bsa.hasFile("meshes\\a.nif"));
+        assertTrue(bsa.hasFile("meshes\\b.nif"));
+        assertTrue(bsa.hasFile("meshes\\c.nif"));
+        assertEquals(2, bsa.numFiles());
+    }
+
+    @Test
+    void damagedIndexIsIgnored() throws Exception {
+        write(archive, "meshes", "a.nif", "b.nif");
+        File index = load(archive).getIndexFile();
+        byte[] whole = Files.readAllBytes(index.toPath());
+
+        Files.write(index.toPath(), Arrays.copyOf(whole, whole.length / 2));
+        assertTrue(load(archive).hasFile("meshes\\b.nif"));
+        // The damaged cache was replaced with a good one
+        assertArrayEquals(whole, Files.readAllBytes(index.toPath()));
+
+        // A header that matches, followed by counts that can't be right
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(index))) {
+            out.writeInt(BSA.indexVersion);
+            out.writeUTF(archive.getPath());
+            out.writeLong(archive.length());
+            out.writeLong(archive.lastModified());
+            out.writeInt(1);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+        BSA bsa = load(archive);
+        assertTrue(bsa.hasFile("meshes\\a.nif"));
+        assertEquals(2, bsa.numFiles());
+    }
+
+    @Test
+    void listsFilesBeforeLoading() throws Exception {
+        write(archive, "meshes", "a.nif");
+        BSA bsa = new BSA(archive.getPath(), false);
+        opened.add(bsa);
+        assertFalse(bsa.loaded());
+        assertTrue(bsa.manualContains(BSA.FileType.NIF));
+        assertTrue(bsa.getFiles().get("MESHES").contains("A.NIF"));
+    }
+
+    @Test
+    void closeReleasesTheArchive() throws Exception {
+        write(archive, "meshes", "a.nif");
+        BSA bsa = new BSA(archive.getPath());
+        assertTrue(bsa.data.isOpen());
+        bsa.close();
+        assertFalse(bsa.data.isOpen());
+
+        Files.write(archive.toPath(), new byte[36]);
+        assertThrows(BadParameter.class, () -> new BSA(archive.getPath()));
+    }
+}
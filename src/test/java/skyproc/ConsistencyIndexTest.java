@@ -0,0 +1,124 @@
+package skyproc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writes V4 consistency indexes and looks their entries back up by EDID and
+ * by FormID.
+ */
+public class ConsistencyIndexTest {
+
+    static final ModListing skyrim = new ModListing("Skyrim", true);
+    static final ModListing dawnguard = new ModListing("Dawnguard", true);
+
+    @TempDir
+    File dir;
+
+    static Mod global(ModListing... masters) {
+        Mod global = new Mod(new ModListing("ConsistencyIndexTest", false), true);
+        for (ModListing master : masters) {
+            global.addMaster(master);
+        }
+        return global;
+    }
+
+    static FormID form(int form, Mod global) {
+        FormID out = new FormID();
+        out.setInternal(form, global);
+        return out;
+    }
+
+    static Map<String, FormID> entries(Mod global) {
+        Map<String, FormID> out = new LinkedHashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            // Pairs share an object ID under different masters
+            out.put("SkyProcEdid" + i, form((i % 2) << 24 | (0x800 + i / 2), global));
+        }
+        out.put("SkyProcCafé", form(0x01000001, global));
+        return out;
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        Map<String, FormID> entries = entries(global(skyrim));
+        File f = new File(dir, "Consistency");
+        ConsistencyIndex written = ConsistencyIndex.write(f, entries);
+        ConsistencyIndex read = ConsistencyIndex.read(f);
+        for (ConsistencyIndex index : new ConsistencyIndex[]{written, read}) {
+            assertEquals(entries.size(), index.size());
+            for (Map.Entry<String, FormID> e : entries.entrySet()) {
+                int entry = index.find(e.getKey());
+                assertNotEquals(-1, entry, e.getKey());
+                assertEquals(e.getKey(), index.edid(entry));
+                assertEquals(e.getValue(), index.getForm(entry), e.getKey());
+                assertEquals(e.getValue().getMaster(), index.master(entry));
+                assertEquals(entry, index.find(e.getValue(), i -> true), e.getKey());
+            }
+            assertEquals(-1, index.find("SkyProcMissing"));
+            assertEquals(-1, index.find(new FormID(0x100000, skyrim), i -> true));
+            assertEquals(-1, index.find(new FormID(0x800, dawnguard), i -> true));
+            assertEquals(-1, index.find(new FormID(0x800, skyrim), i -> false));
+        }
+    }
+
+    @Test
+    void entriesKeepTheirMastersWhenThePatchMastersChange() throws IOException {
+        // Written while the patch had no masters yet, so its own records were at index 0
+        Mod before = global();
+        Map<String, FormID> entries = new LinkedHashMap<>();
+        entries.put("SkyProcPatchRecord", form(0x800, before));
+        File f = new File(dir, "Consistency");
+        ConsistencyIndex.write(f, entries);
+
+        // Read back once the patch has picked up masters, which take index 0 and 1
+        Mod after = global(skyrim, dawnguard);
+        ConsistencyIndex index = ConsistencyIndex.read(f);
+        FormID stored = index.getForm(index.find("SkyProcPatchRecord"));
+        assertEquals(after.getInfo(), stored.getMaster());
+        assertEquals(form(0x02000800, after), stored);
+        assertNotEquals(form(0x00000800, after), stored);
+
+        // A fresh ID for the patch finds the entry, one for a master doesn't
+        assertNotEquals(-1, index.find(new FormID(0x800, after.getInfo()), i -> true));
+        assertEquals(-1, index.find(new FormID(0x800, skyrim), i -> true));
+    }
+
+    @Test
+    void findFiltersSharedFormIDs() throws IOException {
+        Mod global = global(skyrim);
+        Map<String, FormID> entries = new LinkedHashMap<>();
+        entries.put("SkyProcFirst", form(0x01000800, global));
+        entries.put("SkyProcSecond", form(0x01000800, global));
+        ConsistencyIndex index = ConsistencyIndex.write(new File(dir, "Consistency"), entries);
+        FormID id = form(0x01000800, global);
+        int second = index.find(id, i -> index.edid(i).equals("SkyProcSecond"));
+        assertEquals("SkyProcSecond", index.edid(second));
+        assertNotEquals(second, index.find(id, i -> !index.edid(i).equals("SkyProcSecond")));
+    }
+
+    @Test
+    void emptyIndex() throws IOException {
+        File f = new File(dir, "Consistency");
+        ConsistencyIndex.write(f, new LinkedHashMap<>());
+        ConsistencyIndex index = ConsistencyIndex.read(f);
+        assertEquals(0, index.size());
+        assertEquals(-1, index.find("SkyProcEdid"));
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        assertNull(ConsistencyIndex.read(new File(dir, "Missing")));
+        File f = new File(dir, "Consistency");
+        Files.write(f.toPath(), new byte[]{'S', 'P', 'C', '3', 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        assertThrows(IOException.class, () -> ConsistencyIndex.read(f));
+    }
+}
@@ -0,0 +1,132 @@
+package skyproc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the V4 consistency store through several patcher runs against the same
+ * files.
+ */
+public class ConsistencyTest {
+
+    static final ModListing patch = new ModListing("ConsistencyTest", false);
+
+    @TempDir
+    File dir;
+
+    Run run() {
+        return new Run(dir);
+    }
+
+    static class Run extends Consistency.ConsistencyV4 {
+
+        final File dir;
+
+        Run(File dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        String getConsistencyFile() {
+            return new File(dir, "ConsistencyTest_Consistency").getPath();
+        }
+
+        @Override
+        void upgrade(boolean globalOnly) {
+            // No older consistency files to pick up
+        }
+    }
+
+    @Test
+    void saveWithoutImportKeepsEarlierRuns() throws IOException {
+        Run first = run();
+        first.importConsistency(true);
+        assertTrue(first.insert("SkyProcFirst", new FormID(0x800, patch)));
+        first.save();
+
+        // Saved without importing first, as a patcher exporting straight away would
+        Run second = run();
+        assertTrue(second.insert("SkyProcSecond", new FormID(0x801, patch)));
+        second.save();
+
+        Run third = run();
+        third.importConsistency(true);
+        assertEquals(new FormID(0x800, patch), third.getOldForm("SkyProcFirst"));
+        assertEquals(new FormID(0x801, patch), third.getOldForm("SkyProcSecond"));
+        assertFalse(third.requestID(new FormID(0x800, patch)));
+        assertFalse(third.requestID(new FormID(0x801, patch)));
+        assertTrue(third.requestID(new FormID(0x802, patch)));
+    }
+
+    @Test
+    void changesThisRunWinOverTheJournal() throws IOException {
+        Run first = run();
+        first.importConsistency(true);
+        first.insert("SkyProcEdid", new FormID(0x800, patch));
+        first.save();
+        Run second = run();
+        second.importConsistency(true);
+        second.remove("SkyProcEdid");
+        second.save();
+
+        Run third = run();
+        assertTrue(third.insert("SkyProcEdid", new FormID(0x900, patch)));
+        third.save();
+        assertEquals(new FormID(0x900, patch), third.getOldForm("SkyProcEdid"));
+        Run fourth = run();
+        fourth.importConsistency(true);
+        assertEquals(new FormID(0x900, patch), fourth.getOldForm("SkyProcEdid"));
+    }
+
+    @Test
+    void importIsIdempotent() throws IOException {
+        Run first = run();
+        first.importConsistency(true);
+        first.insert("SkyProcFirst", new FormID(0x800, patch));
+        first.save();
+        Run second = run();
+        second.importConsistency(true);
+        second.insert("SkyProcSecond", new FormID(0x801, patch));
+        second.save();
+
+        Run third = run();
+        third.importConsistency(true);
+        int journaled = third.journaled;
+        assertEquals(1, journaled);
+        third.importConsistency(false);
+        third.importConsistency(true);
+        assertEquals(journaled, third.journaled);
+        assertEquals(new FormID(0x801, patch), third.getOldForm("SkyProcSecond"));
+    }
+
+    @Test
+    void compactKeepsEverything() throws IOException {
+        Run first = run();
+        first.importConsistency(true);
+        for (int i = 0; i < 100; i++) {
+            first.insert("SkyProcEdid" + i, new FormID(0x800 + i, patch));
+        }
+        first.save();
+        Run second = run();
+        second.importConsistency(true);
+        second.remove("SkyProcEdid0");
+        second.insert("SkyProcExtra", new FormID(0x700, patch));
+        second.compact = true;
+        second.save();
+        assertFalse(second.getJournalFile().isFile());
+
+        Run third = run();
+        third.importConsistency(true);
+        assertNull(third.getOldForm("SkyProcEdid0"));
+        for (int i = 1; i < 100; i++) {
+            assertEquals(new FormID(0x800 + i, patch), third.getOldForm("SkyProcEdid" + i));
+        }
+        assertEquals(new FormID(0x700, patch), third.getOldForm("SkyProcExtra"));
+        assertEquals(0, third.journaled);
+    }
+}
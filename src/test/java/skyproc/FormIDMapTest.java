@@ -0,0 +1,119 @@
+package skyproc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks FormIDMap against a HashMap through puts, removes and resizes.
+ */
+public class FormIDMapTest {
+
+    static List<FormID> ids(int count) {
+        ModListing[] masters = {new ModListing("Skyrim", true), new ModListing("Dawnguard", true), null};
+        List<FormID> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            out.add(new FormID(i / masters.length + 0x800, masters[i % masters.length]));
+        }
+        return out;
+    }
+
+    static void assertSameContents(Map<Long, Integer> expected, FormIDMap<Integer> map, List<FormID> ids) {
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.isEmpty(), map.isEmpty());
+        for (FormID id : ids) {
+            assertEquals(expected.get(id.key()), map.get(id), id.toString());
+            assertEquals(expected.containsKey(id.key()), map.containsKey(id));
+        }
+        List<Integer> values = new ArrayList<>();
+        for (Integer i : map) {
+            values.add(i);
+        }
+        assertEquals(expected.size(), values.size());
+        assertEquals(new HashSet<>(expected.values()), new HashSet<>(values));
+        Set<Long> keys = new HashSet<>();
+        map.forEachKey(keys::add);
+        assertEquals(expected.keySet(), keys);
+    }
+
+    @Test
+    void matchesHashMap() {
+        List<FormID> ids = ids(3000);
+        FormIDMap<Integer> map = new FormIDMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(0);
+        for (int round = 0; round < 20000; round++) {
+            FormID id = ids.get(random.nextInt(ids.size()));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id.key()), map.remove(id));
+            } else {
+                assertEquals(expected.put(id.key(), round), map.put(id, round));
+            }
+        }
+        assertSameContents(expected, map, ids);
+
+        // Emptying the map one key at a time must not lose any of the rest
+        for (FormID id : ids) {
+            assertEquals(expected.remove(id.key()), map.remove(id));
+            assertNull(map.get(id));
+        }
+        assertSameContents(expected, map, ids);
+    }
+
+    @Test
+    void equalFormIDsShareAKey() {
+        FormIDMap<String> map = new FormIDMap<>();
+        map.put(new FormID(0x123, new ModListing("Skyrim", true)), "first");
+        FormID same = new FormID(0x123, new ModListing("Skyrim", true));
+        assertEquals("first", map.get(same));
+        assertEquals("first", map.put(same, "second"));
+        assertEquals(1, map.size());
+        assertNull(map.get(new FormID(0x123, new ModListing("Dawnguard", true))));
+        assertNull(map.get(new FormID(0x123, null)));
+    }
+
+    @Test
+    void computeIfAbsent() {
+        FormIDMap<List<String>> map = new FormIDMap<>();
+        FormID id = new FormID(0x10, new ModListing("Skyrim", true));
+        List<String> list = map.computeIfAbsent(id, k -> new ArrayList<>());
+        list.add("a");
+        assertSame(list, map.computeIfAbsent(id, k -> fail("Should use the existing value")));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void capacityAndClear() {
+        List<FormID> ids = ids(1000);
+        FormIDMap<Integer> map = new FormIDMap<>(10);
+        map.ensureCapacity(ids.size());
+        int capacity = map.keys.length;
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            map.put(ids.get(i), i);
+            expected.put(ids.get(i).key(), i);
+        }
+        assertEquals(capacity, map.keys.length);
+        assertSameContents(expected, map, ids);
+
+        map.clear();
+        expected.clear();
+        assertSameContents(expected, map, ids);
+        assertFalse(map.iterator().hasNext());
+    }
+
+    @Test
+    void rejectsNullValues() {
+        FormIDMap<String> map = new FormIDMap<>();
+        assertThrows(NullPointerException.class, () -> map.put(new FormID(1, null), null));
+        assertTrue(map.isEmpty());
+    }
+}
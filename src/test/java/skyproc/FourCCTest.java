@@ -0,0 +1,151 @@
+package skyproc;
+
+import lev.LShrinkArray;
+import org.junit.jupiter.api.Test;
+import skyproc.exceptions.BadRecord;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that lookups by packed type find the same subrecords the String
+ * lookups they replaced did.
+ */
+public class FourCCTest {
+
+    static List<SubPrototype> prototypes() {
+        Mod mod = new Mod(new ModListing("FourCCTest", false), true);
+        List<SubPrototype> out = new ArrayList<>();
+        for (GRUP g : mod) {
+            addPrototype(((MajorRecord) g.prototype).subRecords.getPrototype(), out);
+        }
+        return out;
+    }
+
+    static void addPrototype(SubPrototype proto, List<SubPrototype> out) {
+        if (proto == null || out.contains(proto)) {
+            return;
+        }
+        out.add(proto);
+        for (SubRecord s : proto.map.values()) {
+            if (s instanceof SubShell) {
+                addPrototype(((SubShell) s).getPrototype(), out);
+            }
+        }
+    }
+
+    static byte[] header(String type, int length, int blockSize) {
+        ByteBuffer out = ByteBuffer.allocate(blockSize == -1 ? 6 : 16).order(ByteOrder.LITTLE_ENDIAN);
+        if (blockSize != -1) {
+            out.put("XXXX".getBytes(StandardCharsets.ISO_8859_1)).putShort((short) 4).putInt(blockSize);
+        }
+        out.put(type.getBytes(StandardCharsets.ISO_8859_1)).putShort((short) length);
+        return out.array();
+    }
+
+    @Test
+    void namesRoundTrip() {
+        for (SubPrototype proto : prototypes()) {
+            for (String type : proto.map.keySet()) {
+                int code = FourCC.of(type);
+                assertEquals(type, FourCC.name(code));
+                assertSame(FourCC.name(code), FourCC.name(code));
+            }
+        }
+    }
+
+    @Test
+    void namesSurviveTableGrowth() {
+        List<String> types = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String type = "" + (char) ('a' + i % 26) + (char) ('a' + i / 26 % 26) + (char) ('a' + i / 676) + '#';
+            types.add(type);
+            assertEquals(type, FourCC.name(FourCC.of(type)));
+        }
+        for (String type : types) {
+            assertEquals(type, FourCC.name(FourCC.of(type)));
+        }
+    }
+
+    @Test
+    void dispatchMatchesStringLookup() {
+        for (SubPrototype proto : prototypes()) {
+            SubPrototype.Dispatch dispatch = proto.getDispatch();
+            for (Map.Entry<String, SubRecord> e : proto.map.entrySet()) {
+                int slot = dispatch.find(FourCC.of(e.getKey()));
+                assertNotEquals(-1, slot, e.getKey());
+                assertSame(proto.get(e.getKey()), dispatch.records[slot], e.getKey());
+                assertEquals(FourCC.of(e.getValue().getType()), dispatch.standard[slot], e.getKey());
+            }
+            assertEquals(-1, dispatch.find(FourCC.of("####")));
+        }
+    }
+
+    @Test
+    void dispatchFollowsPrototypeChanges() {
+        SubPrototype proto = new SubPrototype() {
+            @Override
+            protected void addRecords() {
+                add(SubString.getNew("EDID", true));
+            }
+        };
+        assertEquals(-1, proto.getDispatch().find(FourCC.of("DATA")));
+        SubRecord data = proto.add(new SubData("DATA"));
+        SubPrototype.Dispatch dispatch = proto.getDispatch();
+        assertSame(data, dispatch.records[dispatch.find(FourCC.of("DATA"))]);
+        proto.remove("DATA");
+        assertEquals(-1, proto.getDispatch().find(FourCC.of("DATA")));
+    }
+
+    @Test
+    void derivedParsesByPackedType() throws Exception {
+        SubPrototype proto = new SubPrototype() {
+            @Override
+            protected void addRecords() {
+                add(SubString.getNew("EDID", true));
+                add(new SubData("DATA"));
+            }
+        };
+        ByteBuffer bytes = ByteBuffer.allocate(6 + 5 + 6 + 4);
+        bytes.put(header("EDID", 5, -1)).put("Test\0".getBytes(StandardCharsets.ISO_8859_1));
+        bytes.put(header("DATA", 4, -1)).put(new byte[]{1, 2, 3, 4});
+        Mod mod = new Mod(new ModListing("FourCCTest", false), true);
+        SubRecordsDerived subRecords = new SubRecordsDerived(proto);
+        subRecords.importSubRecords(new LShrinkArray(bytes.array()), mod);
+        assertEquals("Test", subRecords.getSubString("EDID").print());
+        SubData data = subRecords.getSubData("DATA");
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, data.getData());
+        assertNull(subRecords.slots);
+
+        // A replaced subrecord is parsed into, not the one it replaced
+        SubData replaced = new SubData("DATA");
+        subRecords.add(replaced);
+        subRecords.importSubRecords(new LShrinkArray(bytes.array()), mod);
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, replaced.getData());
+        assertSame(replaced, subRecords.get("DATA"));
+
+        byte[] unknown = header("####", 0, -1);
+        assertThrows(BadRecord.class, () -> subRecords.importSubRecords(new LShrinkArray(unknown), mod));
+    }
+
+    @Test
+    void nextTypeCodeMatchesNextType() {
+        byte[] plain = header("EDID", 12, -1);
+        assertEquals(FourCC.of("EDID"), Record.getNextTypeCode(new LShrinkArray(plain)));
+        assertEquals(-1, Record.getDataBlockSize());
+        assertEquals("EDID", Record.getNextType(new LShrinkArray(plain)));
+        assertEquals(-1, Record.getDataBlockSize());
+
+        byte[] extended = header("DATA", 0, 70000);
+        assertEquals(FourCC.of("DATA"), Record.getNextTypeCode(new LShrinkArray(extended)));
+        assertEquals(70000, Record.getDataBlockSize());
+        assertEquals("DATA", Record.getNextType(new LShrinkArray(extended)));
+        assertEquals(70000, Record.getDataBlockSize());
+    }
+}
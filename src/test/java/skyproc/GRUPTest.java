@@ -0,0 +1,118 @@
+package skyproc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that GRUP iteration and streams read the record list in place and
+ * let go of it afterwards.
+ */
+public class GRUPTest {
+
+    static final ModListing listing = new ModListing("GRUPTest", false);
+
+    static KYWD record(int id) {
+        KYWD out = new KYWD();
+        out.setForm(new FormID(id, listing));
+        return out;
+    }
+
+    static GRUP<KYWD> grup(int size) {
+        GRUP<KYWD> out = new GRUP<>(new KYWD());
+        for (int i = 0; i < size; i++) {
+            out.addRecord(record(0x800 + i));
+        }
+        return out;
+    }
+
+    static List<FormID> ids(Stream<KYWD> records) {
+        return records.map(MajorRecord::getForm).collect(Collectors.toList());
+    }
+
+    @Test
+    void getRecordsIsASnapshot() {
+        GRUP<KYWD> g = grup(10);
+        ArrayList<KYWD> list = g.listRecords;
+        ArrayList<KYWD> records = g.getRecords();
+        assertNotSame(list, records);
+        g.addRecord(record(0x900));
+        assertSame(list, g.listRecords);
+        assertEquals(0, g.readers);
+        assertEquals(10, records.size());
+        assertEquals(11, g.numRecords());
+    }
+
+    @Test
+    void streamsReadTheListInPlace() {
+        GRUP<KYWD> g = grup(5000);
+        ArrayList<KYWD> list = g.listRecords;
+        List<FormID> expected = new ArrayList<>();
+        for (KYWD k : list) {
+            expected.add(k.getForm());
+        }
+
+        assertEquals(expected, ids(g.stream()));
+        assertEquals(0, g.readers);
+        assertEquals(expected, ids(g.parallelStream()));
+        assertEquals(0, g.readers);
+        assertEquals(expected.size(), g.parallelStream().mapToInt(k -> 1).sum());
+        assertEquals(0, g.readers);
+
+        g.addRecord(record(0x2000));
+        assertSame(list, g.listRecords);
+    }
+
+    @Test
+    void closingAStreamLetsGoOfTheList() {
+        GRUP<KYWD> g = grup(100);
+        try (Stream<KYWD> s = g.parallelStream()) {
+            assertTrue(s.anyMatch(k -> true));
+        }
+        assertEquals(0, g.readers);
+        try (Stream<KYWD> s = g.stream()) {
+            assertTrue(s.findFirst().isPresent());
+        }
+        assertEquals(0, g.readers);
+    }
+
+    @Test
+    void streamsKeepTheirRecordsThroughChanges() {
+        GRUP<KYWD> g = grup(100);
+        List<FormID> expected = ids(g.stream());
+        List<FormID> seen = new ArrayList<>();
+        g.stream().forEach(k -> {
+            seen.add(k.getForm());
+            g.removeRecord(k);
+            g.addRecord(record(k.getForm().form + 0x1000));
+        });
+        assertEquals(expected, seen);
+        assertEquals(100, g.numRecords());
+        assertEquals(0, g.readers);
+    }
+
+    @Test
+    void parallelStreamsRunInTheCallingSession() throws Exception {
+        SPSession session = SPSession.create();
+        GRUP<KYWD> g = grup(5000);
+        Set<SPSession> seen = session.call(() -> g.parallelStream()
+                .map(k -> SPSession.current())
+                .collect(Collectors.toSet()));
+        assertEquals(1, seen.size());
+        assertTrue(seen.contains(session));
+
+        Mod mod = new Mod(listing, true);
+        mod.GRUPs.get(GRUP_TYPE.KYWD).merge(g);
+        seen = session.call(() -> mod.parallelStream()
+                .map(k -> SPSession.current())
+                .collect(Collectors.toSet()));
+        assertEquals(1, seen.size());
+        assertTrue(seen.contains(session));
+    }
+}
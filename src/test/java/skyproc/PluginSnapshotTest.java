@@ -0,0 +1,59 @@
+package skyproc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Evicts the snapshots used least recently once the folder is over its cap.
+ */
+public class PluginSnapshotTest {
+
+    @TempDir
+    File dir;
+    File documents;
+
+    @BeforeEach
+    void setDocuments() {
+        documents = SPGlobal.skyProcDocuments;
+        SPGlobal.skyProcDocuments = new File(dir, "SkyProc");
+    }
+
+    @AfterEach
+    void restoreDocuments() {
+        SPGlobal.skyProcDocuments = documents;
+    }
+
+    File snapshot(String name, long used) throws Exception {
+        File folder = PluginSnapshot.getFolder();
+        folder.mkdirs();
+        File out = new File(folder, name + ".snap");
+        Files.write(out.toPath(), new byte[100]);
+        assertTrue(out.setLastModified(used));
+        return out;
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+        File oldest = snapshot("a", 1000000000000L);
+        File older = snapshot("b", 1100000000000L);
+        File recent = snapshot("c", 1200000000000L);
+        // Just made, but given the oldest date so only keep protects it
+        File made = snapshot("d", 900000000000L);
+
+        PluginSnapshot.evict(made, 250);
+        assertFalse(oldest.exists());
+        assertFalse(older.exists());
+        assertTrue(recent.exists());
+        assertTrue(made.exists());
+
+        PluginSnapshot.evict(made, 1000);
+        assertTrue(recent.exists());
+    }
+}
@@ -0,0 +1,112 @@
+package skyproc;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compresses and inflates single records and whole exported GRUPs.
+ */
+public class RecordCompressionTest {
+
+    static final int headerSize = RecordCompression.headerSize;
+
+    static byte[] data(int length, long seed) {
+        // Few distinct values, so the data compresses the way record data does
+        Random random = new Random(seed);
+        byte[] out = new byte[length];
+        for (int i = 0; i < length; i++) {
+            out[i] = (byte) random.nextInt(8);
+        }
+        return out;
+    }
+
+    static ByteBuffer header(String type, int size) {
+        ByteBuffer out = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(type.getBytes(StandardCharsets.ISO_8859_1));
+        out.putInt(size);
+        return out;
+    }
+
+    static byte[] record(int id, byte[] data) {
+        ByteBuffer out = ByteBuffer.allocate(headerSize + data.length).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(header("WEAP", data.length).putInt(12, id).array());
+        out.put(data);
+        return out.array();
+    }
+
+    static byte[] grup(byte[]... contents) {
+        int size = headerSize;
+        for (byte[] c : contents) {
+            size += c.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(header("GRUP", size).array());
+        for (byte[] c : contents) {
+            out.put(c);
+        }
+        return out.array();
+    }
+
+    @Test
+    void deflateRoundTrip() throws DataFormatException {
+        for (int length : new int[]{0, 1, 100, 5000, 200000}) {
+            byte[] data = data(length + 10, length);
+            byte[] packed = RecordCompression.deflate(data, 10, length);
+            assertEquals(length, ByteBuffer.wrap(packed).order(ByteOrder.LITTLE_ENDIAN).getInt(0));
+            byte[] inflated = RecordCompression.inflate(packed, 4, packed.length - 4, length);
+            assertArrayEquals(Arrays.copyOfRange(data, 10, length + 10), inflated);
+        }
+    }
+
+    @Test
+    void inflateChecksSize() {
+        byte[] packed = RecordCompression.deflate(data(1000, 1), 0, 1000);
+        assertThrows(DataFormatException.class, () -> RecordCompression.inflate(packed, 4, packed.length - 4, 1001));
+        assertThrows(DataFormatException.class, () -> RecordCompression.inflate(packed, 4, packed.length - 20, 1000));
+    }
+
+    @Test
+    void grupRoundTrip() throws IOException, DataFormatException {
+        byte[] small = record(1, data(50, 1));
+        byte[] large = record(2, data(4000, 2));
+        byte[] nested = record(3, data(8000, 3));
+        byte[] original = grup(small, large, grup(nested, record(4, data(10, 4))));
+        byte[] compressed = RecordCompression.compressGRUP(original, 1000);
+        assertTrue(compressed.length < original.length);
+        ByteBuffer in = ByteBuffer.wrap(compressed).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(compressed.length, in.getInt(4));
+        // The small record leads the GRUP untouched, the large one after it is compressed
+        assertEquals(0, in.getInt(headerSize + 8) & RecordCompression.compressedFlag);
+        int second = headerSize + small.length;
+        assertNotEquals(0, in.getInt(second + 8) & RecordCompression.compressedFlag);
+        assertEquals(4000, in.getInt(second + headerSize));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RecordCompression.inflateGRUP(ByteBuffer.wrap(compressed), out);
+        assertArrayEquals(original, out.toByteArray());
+
+        // Mapped plugins hand over a direct view part way into the file
+        ByteBuffer direct = ByteBuffer.allocateDirect(8 + compressed.length);
+        direct.position(8);
+        direct.put(compressed).position(8);
+        out.reset();
+        RecordCompression.inflateGRUP(direct, out);
+        assertArrayEquals(original, out.toByteArray());
+    }
+
+    @Test
+    void grupBelowThresholdUnchanged() throws IOException {
+        byte[] original = grup(record(1, data(50, 1)), record(2, data(60, 2)));
+        assertSame(original, RecordCompression.compressGRUP(original, 1000));
+    }
+}
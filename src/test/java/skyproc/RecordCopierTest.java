@@ -0,0 +1,57 @@
+package skyproc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Copies subrecords holding FormIDs and checks that the originals are left as
+ * they were.
+ */
+public class RecordCopierTest {
+
+    static final ModListing skyrim = new ModListing("Skyrim", true);
+    static final ModListing dawnguard = new ModListing("Dawnguard", true);
+
+    static FormID unresolved(int form) {
+        FormID out = new FormID();
+        out.form = form;
+        return out;
+    }
+
+    static SubForm copy(SubForm in, Mod srcMod) {
+        SubRecord out = RecordCopier.copy(in, DLBR.DLBRprototype, srcMod);
+        assertNotSame(in, out);
+        return (SubForm) out;
+    }
+
+    @Test
+    void copiesFormIDs() {
+        SubForm in = new SubForm("QNAM", new FormID(0x800, dawnguard));
+        SubForm out = copy(in, null);
+        assertEquals(new FormID(0x800, dawnguard), out.getForm());
+        assertNotSame(in.getForm(), out.getForm());
+        assertEquals(0x800, in.getForm().form);
+    }
+
+    @Test
+    void resolvesCopiesAgainstTheSourceMod() {
+        Mod srcMod = new Mod(new ModListing("RecordCopierTest", false), true);
+        srcMod.addMaster(skyrim);
+        srcMod.addMaster(dawnguard);
+        SubForm in = new SubForm("QNAM", unresolved(0x01000800));
+        SubForm out = copy(in, srcMod);
+        assertEquals(new FormID(0x800, dawnguard), out.getForm());
+        // The original is still waiting to be resolved
+        assertNull(in.getForm().getMaster());
+        assertEquals(0x01000800, in.getForm().form);
+    }
+
+    @Test
+    void copiesWithoutASourceMod() {
+        SubForm in = new SubForm("QNAM", unresolved(0x01000800));
+        SubForm out = copy(in, null);
+        assertNull(out.getForm().getMaster());
+        assertEquals(0x01000800, out.getForm().form);
+    }
+}
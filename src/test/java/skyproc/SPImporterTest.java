@@ -0,0 +1,71 @@
+package skyproc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Extracts GRUPs one after another, through both kinds of channel.
+ */
+public class SPImporterTest {
+
+    @TempDir
+    File dir;
+
+    /**
+     * Writes two empty GRUP headers, the first followed by a few bytes of
+     * content.
+     */
+    File write() throws Exception {
+        ByteBuffer out = ByteBuffer.allocate(24 + 6 + 24).order(ByteOrder.LITTLE_ENDIAN);
+        out.put("GRUP".getBytes(StandardCharsets.ISO_8859_1)).putInt(30).put(new byte[16]);
+        out.put(new byte[]{1, 2, 3, 4, 5, 6});
+        out.put("GRUP".getBytes(StandardCharsets.ISO_8859_1)).putInt(24).put(new byte[16]);
+        File f = new File(dir, "SPImporterTest.esp");
+        Files.write(f.toPath(), out.array());
+        return f;
+    }
+
+    static void extractsInTurn(RecordFileChannel in) {
+        try {
+            RecordShrinkArray first = SPImporter.extractGRUPData(in);
+            assertEquals(30, first.available());
+            assertEquals(30, in.pos());
+            RecordShrinkArray second = SPImporter.extractGRUPData(in);
+            assertEquals(24, second.available());
+            assertEquals(54, in.pos());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    void extractsGRUPsInTurn() throws Exception {
+        File f = write();
+        extractsInTurn(new RecordFileChannel(f.getPath()));
+        extractsInTurn(new MappedRecordFileChannel(f.getPath()));
+    }
+
+    @Test
+    void importsShareAGRUPPool() {
+        int threads = SPGlobal.getGRUPImportThreads();
+        try {
+            SPGlobal.setGRUPImportThreads(2);
+            ExecutorService pool = SPImporter.grupPool();
+            assertSame(pool, SPImporter.grupPool());
+            SPGlobal.setGRUPImportThreads(3);
+            assertNotSame(pool, SPImporter.grupPool());
+            assertTrue(pool.isShutdown());
+        } finally {
+            SPGlobal.setGRUPImportThreads(threads);
+        }
+    }
+}
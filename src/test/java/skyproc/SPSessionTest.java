@@ -0,0 +1,80 @@
+package skyproc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs patches in sessions shared from one import, the way SUM runs patchers
+ * in-process.
+ */
+public class SPSessionTest {
+
+    static final ModListing patchListing = new ModListing("SPSessionTest", false);
+
+    @TempDir
+    File dir;
+    File documents;
+
+    @BeforeEach
+    void setDocuments() {
+        documents = SPGlobal.skyProcDocuments;
+        // Consistency paths are built with backslashes, so on other systems the
+        // files end up beside the folder; keep that inside the temp dir too
+        SPGlobal.skyProcDocuments = new File(dir, "SkyProc");
+    }
+
+    @AfterEach
+    void restoreDocuments() {
+        SPGlobal.skyProcDocuments = documents;
+    }
+
+    /**
+     * Builds a patch holding a keyword per EDID, in the order given, and
+     * saves its consistency data.
+     */
+    static List<FormID> runPatcher(SPSession shared, String... edids) throws Exception {
+        SPSession session = shared.share(null);
+        return session.call(() -> {
+            SPGlobal.setGlobalPatch(new Mod(patchListing, true));
+            SPGlobal.importConsistency();
+            List<FormID> out = new ArrayList<>();
+            for (String edid : edids) {
+                out.add(new FormID(new KYWD(edid).getForm()));
+            }
+            Consistency.export();
+            return out;
+        });
+    }
+
+    @Test
+    void patcherKeepsFormIDsBetweenRuns() throws Exception {
+        SPSession shared = SPSession.create();
+        List<FormID> first = runPatcher(shared, "SkyProcFirst", "SkyProcSecond");
+        // Created the other way around, so fresh IDs would come out swapped
+        List<FormID> second = runPatcher(shared, "SkyProcSecond", "SkyProcFirst");
+        assertNotEquals(first.get(0), first.get(1));
+        assertEquals(first.get(0), second.get(1));
+        assertEquals(first.get(1), second.get(0));
+    }
+
+    @Test
+    void globalPatchIsOnlySkippedInItsSession() throws Exception {
+        SPSession shared = SPSession.create();
+        SPSession session = shared.share(null);
+        session.call(() -> {
+            SPGlobal.setGlobalPatch(new Mod(patchListing, true));
+            assertTrue(SPGlobal.isModToSkip(patchListing));
+            return null;
+        });
+        shared.run(() -> assertFalse(SPGlobal.isModToSkip(patchListing)));
+        assertFalse(SPGlobal.modsToSkip.contains(patchListing));
+    }
+}
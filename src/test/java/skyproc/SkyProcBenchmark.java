@@ -0,0 +1,264 @@
+package skyproc;
+
+import lev.Ln;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Times SkyProc, mostly against the game's own plugins. Run with "gradle
+ * benchmark", pointing -Dskyproc.data at a Skyrim Data folder; without one
+ * the benchmarks that need it are skipped.
+ */
+public class SkyProcBenchmark {
+
+    static final ModListing skyrim = new ModListing("Skyrim.esm");
+    static final int warmups = 3;
+    static final int runs = 10;
+    // Keeps results alive, so the JIT can't drop the work being timed
+    static long sink;
+
+    @BeforeAll
+    public static void beforeAll() {
+        SPGlobal.pathToData = System.getProperty("skyproc.data", "") + File.separator;
+        SPGlobal.pathToDataFixed = SPGlobal.pathToData;
+        SPGlobal.checkMissingMasters = false;
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        System.out.println(SkyProcTester.DASHED_LINE);
+    }
+
+    /**
+     * @return Average milliseconds per run of task, after a few runs to warm
+     * up.
+     */
+    static double time(Callable<?> task) throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            task.call();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            task.call();
+        }
+        return (System.nanoTime() - start) / 1e6 / runs;
+    }
+
+    static String ms(double time) {
+        return String.format("%.1f", time);
+    }
+
+    static Mod importSkyrim(GRUP_TYPE... types) throws Exception {
+        assumeTrue(new File(SPGlobal.pathToDataFixed, skyrim.print()).isFile(), "No Skyrim.esm in -Dskyproc.data");
+        SPGlobal.reset();
+        return SPImporter.importMod(skyrim, SPGlobal.pathToDataFixed, types);
+    }
+
+    @Test
+    void dispatchTypes() throws Exception {
+        int lookups = 1 << 22;
+        for (SubPrototype proto : new SubPrototype[]{NPC_.NPC_proto, QUST.QUSTproto}) {
+            int[] codes = proto.map.keySet().stream().mapToInt(FourCC::of).toArray();
+            SubPrototype.Dispatch dispatch = proto.getDispatch();
+            double packed = time(() -> {
+                for (int i = 0; i < lookups; i++) {
+                    sink += dispatch.find(codes[i % codes.length]);
+                }
+                return null;
+            });
+            double strings = time(() -> {
+                for (int i = 0; i < lookups; i++) {
+                    sink += System.identityHashCode(proto.map.get(FourCC.name(codes[i % codes.length])));
+                }
+                return null;
+            });
+            SkyProcTester.info("{} lookups of {} types: {} ms by packed type, {} ms by String",
+                    lookups, proto.map.size(), ms(packed), ms(strings));
+        }
+    }
+
+    @Test
+    void importRecords() throws Exception {
+        boolean streamMode = SPGlobal.streamMode;
+        try {
+            for (boolean stream : new boolean[]{false, true}) {
+                SPGlobal.streamMode = stream;
+                for (GRUP_TYPE type : new GRUP_TYPE[]{GRUP_TYPE.NPC_, GRUP_TYPE.QUST}) {
+                    double time = time(() -> importSkyrim(type));
+                    SkyProcTester.info("Importing {} {}: {} ms", type, stream ? "streamed" : "in full", ms(time));
+                }
+            }
+        } finally {
+            SPGlobal.streamMode = streamMode;
+        }
+    }
+
+    @Test
+    void copyRecords() throws Exception {
+        Mod mod = importSkyrim(GRUP_TYPE.NPC_, GRUP_TYPE.RACE, GRUP_TYPE.QUST);
+        for (GRUP_TYPE type : new GRUP_TYPE[]{GRUP_TYPE.NPC_, GRUP_TYPE.RACE, GRUP_TYPE.QUST}) {
+            GRUP<?> g = mod.GRUPs.get(type);
+            assertTrue(g.numRecords() > 0);
+            double copier = time(() -> {
+                for (MajorRecord r : g) {
+                    for (SubRecord s : r.duplicate(mod).subRecords) {
+                        sink += System.identityHashCode(s);
+                    }
+                }
+                return null;
+            });
+            double serialized = time(() -> {
+                for (MajorRecord r : g) {
+                    for (SubRecord s : r.subRecords) {
+                        sink += System.identityHashCode(Ln.deepCopy(s));
+                    }
+                }
+                return null;
+            });
+            SkyProcTester.info("Copying {} {}: {} ms with RecordCopier, {} ms serialized ({}x)", g.numRecords(), type,
+                    ms(copier), ms(serialized), ms(serialized / copier));
+        }
+    }
+
+    @Test
+    void measureLengths() throws Exception {
+        GRUP_TYPE[] types = {GRUP_TYPE.NPC_, GRUP_TYPE.QUST, GRUP_TYPE.RACE, GRUP_TYPE.LVLI};
+        Mod mod = importSkyrim(types);
+        boolean stringTabled = mod.isFlag(Mod.Mod_Flags.STRING_TABLED);
+        for (GRUP_TYPE type : types) {
+            GRUP<?> g = mod.GRUPs.get(type);
+            // Every header written asks for a length, as export does
+            double uncached = time(() -> {
+                sink += g.getTotalLength(stringTabled);
+                for (MajorRecord r : g) {
+                    sink += r.getContentLength(stringTabled);
+                    for (SubRecord s : r.subRecords) {
+                        sink += s.getContentLength(stringTabled);
+                    }
+                }
+                return null;
+            });
+            double cached = time(() -> {
+                ModExporter out = new ModExporter(mod);
+                sink += g.getTotalLength(out);
+                for (MajorRecord r : g) {
+                    sink += out.contentLength(r);
+                    for (SubRecord s : r.subRecords) {
+                        sink += out.contentLength(s);
+                    }
+                }
+                return null;
+            });
+            SkyProcTester.info("Lengths of {} {}: {} ms measured each time, {} ms cached in ModExporter",
+                    g.numRecords(), type, ms(uncached), ms(cached));
+        }
+    }
+
+    @Test
+    void exportRecords(@TempDir File dir) throws Exception {
+        GRUP_TYPE[] types = {GRUP_TYPE.NPC_, GRUP_TYPE.QUST, GRUP_TYPE.RACE, GRUP_TYPE.LVLI, GRUP_TYPE.WEAP, GRUP_TYPE.ARMO};
+        Mod mod = importSkyrim(types);
+        File documents = SPGlobal.skyProcDocuments;
+        int exportThreads = SPGlobal.exportThreads;
+        SPGlobal.skyProcDocuments = new File(dir, "SkyProc");
+        try {
+            for (int threads : new int[]{1, 4}) {
+                SPGlobal.setExportThreads(threads);
+                double time = time(() -> {
+                    Mod patch = new Mod(new ModListing("SkyProcBenchmark.esp"));
+                    patch.setFlag(Mod.Mod_Flags.STRING_TABLED, false);
+                    SPGlobal.setGlobalPatch(patch);
+                    patch.addAsOverrides(mod, types);
+                    patch.export(new File(dir, patch.getName()));
+                    return null;
+                });
+                SkyProcTester.info("Exporting {} records on {} threads: {} ms", mod.numRecords(), threads, ms(time));
+            }
+        } finally {
+            SPGlobal.skyProcDocuments = documents;
+            SPGlobal.setExportThreads(exportThreads);
+        }
+    }
+
+    /**
+     * Compares importing Skyrim.esm directly to importing it from a snapshot
+     * of just the GRUPs asked for. The import that makes the snapshot is timed
+     * on its own.
+     */
+    @Test
+    void importSnapshots(@TempDir File dir) throws Exception {
+        GRUP_TYPE[] types = {GRUP_TYPE.NPC_, GRUP_TYPE.QUST, GRUP_TYPE.RACE};
+        File documents = SPGlobal.skyProcDocuments;
+        boolean snapshots = SPGlobal.importSnapshots;
+        SPGlobal.skyProcDocuments = new File(dir, "SkyProc");
+        try {
+            SPGlobal.setImportSnapshots(false);
+            double direct = time(() -> importSkyrim(types));
+
+            SPGlobal.setImportSnapshots(true);
+            long start = System.nanoTime();
+            importSkyrim(types);
+            double first = (System.nanoTime() - start) / 1e6;
+            double snapshot = time(() -> importSkyrim(types));
+            SkyProcTester.info("Importing {} GRUPs: {} ms directly, {} ms from a snapshot, {} ms for the import that made it",
+                    types.length, ms(direct), ms(snapshot), ms(first));
+        } finally {
+            SPGlobal.skyProcDocuments = documents;
+            SPGlobal.setImportSnapshots(snapshots);
+        }
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static String mb(long bytes) {
+        return String.format("%.1f", bytes / 1048576.0);
+    }
+
+    /**
+     * Compares sharing an import with an in-process patcher, through
+     * Mod.duplicate(), to the import a patcher run in a child process does
+     * for itself. The child's JVM startup isn't counted.
+     */
+    @Test
+    void shareMods() throws Exception {
+        GRUP_TYPE[] types = {GRUP_TYPE.NPC_, GRUP_TYPE.QUST, GRUP_TYPE.RACE, GRUP_TYPE.LVLI, GRUP_TYPE.WEAP, GRUP_TYPE.ARMO};
+        long empty = usedHeap();
+        long start = System.nanoTime();
+        Mod mod = importSkyrim(types);
+        double imported = (System.nanoTime() - start) / 1e6;
+        long importHeap = usedHeap() - empty;
+        SkyProcTester.info("Importing {} records for a child process: {} ms, {} MB", mod.numRecords(), ms(imported), mb(importHeap));
+
+        double duplicated = time(mod::duplicate);
+        long before = usedHeap();
+        Mod copy = mod.duplicate();
+        long copyHeap = usedHeap() - before;
+        SkyProcTester.info("Mod.duplicate() for an in-process patcher: {} ms, {} MB", ms(duplicated), mb(copyHeap));
+
+        // The most a patcher's copies can grow to, once it has touched every subrecord
+        start = System.nanoTime();
+        for (GRUP<?> g : copy) {
+            for (MajorRecord r : g) {
+                for (SubRecord s : r.subRecords) {
+                    sink += System.identityHashCode(s);
+                }
+            }
+        }
+        double touched = (System.nanoTime() - start) / 1e6;
+        SkyProcTester.info("Touching every subrecord of the copy: {} ms, {} MB in all", ms(touched), mb(usedHeap() - before));
+    }
+}
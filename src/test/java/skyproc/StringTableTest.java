@@ -0,0 +1,71 @@
+package skyproc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writes string tables with StringTableBuilder and reads them back with
+ * StringTable.
+ */
+public class StringTableTest {
+
+    @TempDir
+    File dir;
+
+    static List<String> strings() {
+        List<String> out = new ArrayList<>();
+        out.add("Iron Sword");
+        out.add("");
+        out.add("Ysolda's Café");
+        for (int i = 0; i < 5000; i++) {
+            out.add("String " + i);
+        }
+        return out;
+    }
+
+    @Test
+    void builderDedupsStrings() {
+        StringTableBuilder builder = new StringTableBuilder(SubStringPointer.Files.STRINGS);
+        int first = builder.add("Iron Sword");
+        assertEquals(1, first);
+        assertEquals(2, builder.add("Steel Sword"));
+        assertEquals(first, builder.add("Iron Sword"));
+        assertEquals(2, builder.size());
+        builder.clear();
+        assertEquals(0, builder.size());
+        assertEquals(1, builder.add("Steel Sword"));
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        for (SubStringPointer.Files file : SubStringPointer.Files.values()) {
+            StringTableBuilder builder = new StringTableBuilder(file);
+            List<String> strings = strings();
+            int[] ids = new int[strings.size()];
+            for (int i = 0; i < strings.size(); i++) {
+                ids[i] = builder.add(strings.get(i));
+            }
+            File f = new File(dir, "Test." + file);
+            builder.write(f);
+            for (boolean mapped : new boolean[]{false, true}) {
+                StringTable table = StringTable.read(file, f, mapped);
+                assertEquals(strings.size(), table.size());
+                for (int i = 0; i < strings.size(); i++) {
+                    assertTrue(table.contains(ids[i]));
+                    assertEquals(strings.get(i), table.get(ids[i]), file + " " + ids[i]);
+                    // Second read comes from the cache
+                    assertEquals(strings.get(i), table.get(ids[i]));
+                }
+                assertFalse(table.contains(0));
+                assertNull(table.get(strings.size() + 1));
+            }
+        }
+    }
+}
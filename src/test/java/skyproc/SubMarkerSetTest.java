@@ -0,0 +1,59 @@
+package skyproc;
+
+import lev.LShrinkArray;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that a loaded marker carries over to the data parsed after it, but
+ * not onto other importing threads.
+ */
+public class SubMarkerSetTest {
+
+    static final Mod mod = new Mod(new ModListing("SubMarkerSetTest", false), true);
+
+    static LShrinkArray subrecord(String type, byte... data) {
+        ByteBuffer out = ByteBuffer.allocate(6 + data.length).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(type.getBytes(StandardCharsets.ISO_8859_1)).putShort((short) data.length).put(data);
+        return new LShrinkArray(out.array());
+    }
+
+    static SubMarkerSet<SubData> markerSet() {
+        return new SubMarkerSet<>(new SubData("INDX"), "MNAM", "FNAM");
+    }
+
+    @Test
+    void markerCarriesOverToTheNextSet() throws Exception {
+        SubMarkerSet<SubData> markers = markerSet();
+        SubMarkerSet<SubData> data = markerSet();
+        markers.parseData(subrecord("FNAM"), mod);
+        data.parseData(subrecord("INDX", new byte[]{1, 2, 3, 4}), mod);
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, data.set.get("FNAM").getData());
+    }
+
+    @Test
+    void markersAreKeptPerThread() throws Exception {
+        markerSet().parseData(subrecord("MNAM"), mod);
+        SubMarkerSet<SubData> other = markerSet();
+        Thread t = new Thread(() -> {
+            try {
+                markerSet().parseData(subrecord("FNAM"), mod);
+                other.parseData(subrecord("INDX", new byte[]{5}), mod);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        t.start();
+        t.join();
+        SubMarkerSet<SubData> mine = markerSet();
+        mine.parseData(subrecord("INDX", new byte[]{1}), mod);
+        assertTrue(mine.set.containsKey("MNAM"));
+        assertTrue(other.set.containsKey("FNAM"));
+        assertFalse(other.set.containsKey("MNAM"));
+    }
+}